@@ -7,29 +7,24 @@ CREATE TABLE User(
 CREATE TABLE GameReport(
                            id INTEGER PRIMARY KEY AUTOINCREMENT,
                            user TEXT REFERENCES User(name) ON DELETE CASCADE NOT NULL ,
-                           timestamp DATETIME DEFAULT  CURRENT_TIMESTAMP NOT NULL ,
+                           -- Millisecondi dall'epoch
+                           timestamp INTEGER NOT NULL,
                            difficulty TEXT NOT NULL CHECK (difficulty IN ('EASY', 'MEDIUM', 'HARD')),
-                           max_time TIME NOT NULL,
-                           used_time TIME NOT NULL,
+                           -- Durate in millisecondi
+                           max_time INTEGER NOT NULL CHECK (max_time >= 0),
+                           used_time INTEGER NOT NULL CHECK (used_time >= 0),
                            question_count INTEGER NOT NULL CHECK (question_count > 0),
-                           score INTEGER NOT NULL CHECK (score >= 0),
-
-                           CHECK (
-                               max_time LIKE '__:__' AND
-                               substr(max_time, 1, 2) BETWEEN '00' AND '60' AND
-                               substr(max_time, 4, 2) BETWEEN '00' AND '59'
-                               ),
-                           CHECK (
-                               used_time LIKE '__:__' AND
-                               substr(used_time, 1, 2) BETWEEN '00' AND '60' AND
-                               substr(used_time, 4, 2) BETWEEN '00' AND '59'
-                               )
+                           score INTEGER NOT NULL CHECK (score >= 0)
 );
 
+CREATE INDEX GameReport_user_timestamp ON GameReport(user, timestamp);
+
 CREATE TABLE Document(
                          id TEXT PRIMARY KEY,
                          title TEXT NOT NULL DEFAULT id,
-                         word_count INTEGER NOT NULL CHECK (word_count > 0)
+                         word_count INTEGER NOT NULL CHECK (word_count >= 0),
+                         -- Numero totale di token, NULL finché non viene salvato l'istogramma dei termini
+                         token_count INTEGER CHECK (token_count >= 0)
 );
 
 CREATE TABLE Content(
@@ -38,12 +33,56 @@ CREATE TABLE Content(
                         PRIMARY KEY (document, report)
 );
 
+CREATE INDEX Content_report ON Content(report);
+
+-- Statistiche per utente e difficoltà, mantenute dai trigger sui report
+CREATE TABLE UserStats(
+                          user TEXT NOT NULL REFERENCES User(name) ON DELETE CASCADE,
+                          difficulty TEXT NOT NULL CHECK (difficulty IN ('EASY', 'MEDIUM', 'HARD')),
+                          games INTEGER NOT NULL CHECK (games > 0),
+                          total_score INTEGER NOT NULL,
+                          max_score INTEGER NOT NULL,
+                          PRIMARY KEY (user, difficulty)
+) WITHOUT ROWID;
+
+-- Totali per utente, mantenuti dai trigger su UserStats
+CREATE TABLE UserTotals(
+                           user TEXT PRIMARY KEY REFERENCES User(name) ON DELETE CASCADE,
+                           games INTEGER NOT NULL CHECK (games > 0),
+                           total_score INTEGER NOT NULL,
+                           easy_games INTEGER NOT NULL,
+                           medium_games INTEGER NOT NULL,
+                           hard_games INTEGER NOT NULL
+) WITHOUT ROWID;
+
+-- Indici di classifica: punteggio medio decrescente, a parità di media per nome utente
+CREATE INDEX UserStats_ranking ON UserStats(difficulty, total_score / games DESC, user);
+
+CREATE INDEX UserTotals_ranking ON UserTotals(total_score / games DESC, user);
+
+CREATE TABLE Term(
+                     id INTEGER PRIMARY KEY,
+                     word TEXT NOT NULL UNIQUE CHECK (LENGTH(word) > 0)
+);
+
 CREATE TABLE WDM(
-                    document TEXT REFERENCES Document(id) ON DELETE CASCADE,
-                    word TEXT NOT NULL CHECK (LENGTH(word) > 0),
+                    document TEXT NOT NULL REFERENCES Document(id) ON DELETE CASCADE,
+                    term INTEGER NOT NULL REFERENCES Term(id),
                     occurrences INTEGER NOT NULL CHECK (occurrences >= 0),
-                    PRIMARY KEY (document, word)
-);
+                    PRIMARY KEY (document, term)
+) WITHOUT ROWID;
+
+CREATE INDEX WDM_term ON WDM(term);
+
+-- Conteggi di tutti i termini dei documenti, stopword comprese
+CREATE TABLE DocumentTerm(
+                    document TEXT NOT NULL REFERENCES Document(id) ON DELETE CASCADE,
+                    term INTEGER NOT NULL REFERENCES Term(id),
+                    occurrences INTEGER NOT NULL CHECK (occurrences > 0),
+                    PRIMARY KEY (document, term)
+) WITHOUT ROWID;
+
+CREATE INDEX DocumentTerm_term ON DocumentTerm(term);
 
 CREATE TABLE StopWord(
                          word TEXT PRIMARY KEY CHECK (LENGTH(word) > 0)
@@ -69,4 +108,99 @@ CREATE TRIGGER ensure_one_admin_before_update
         AND (SELECT COUNT(*) FROM "User" WHERE isAdmin = 1) = 1
 BEGIN
     SELECT RAISE(ABORT, 'Deve esistere almeno un utente admin');
-END;
\ No newline at end of file
+END;
+
+-- Trigger su INSERT: aggiorna le statistiche dell'utente per la difficoltà del report
+CREATE TRIGGER user_stats_after_insert
+    AFTER INSERT ON GameReport
+    FOR EACH ROW
+BEGIN
+    INSERT INTO UserStats (user, difficulty, games, total_score, max_score)
+    VALUES (NEW.user, NEW.difficulty, 1, NEW.score, NEW.score)
+    ON CONFLICT (user, difficulty) DO UPDATE SET
+        games = games + 1,
+        total_score = total_score + excluded.total_score,
+        max_score = MAX(max_score, excluded.max_score);
+END;
+
+-- Trigger su DELETE: toglie il report dalle statistiche, ricalcolando il massimo solo se era il report rimosso
+CREATE TRIGGER user_stats_after_delete
+    AFTER DELETE ON GameReport
+    FOR EACH ROW
+BEGIN
+    DELETE FROM UserStats WHERE user = OLD.user AND difficulty = OLD.difficulty AND games = 1;
+    UPDATE UserStats SET
+        games = games - 1,
+        total_score = total_score - OLD.score,
+        max_score = CASE WHEN OLD.score < max_score THEN max_score ELSE
+            (SELECT MAX(score) FROM GameReport WHERE user = OLD.user AND difficulty = OLD.difficulty) END
+    WHERE user = OLD.user AND difficulty = OLD.difficulty;
+END;
+
+-- Trigger su UPDATE: sposta il report dalle statistiche precedenti a quelle nuove
+CREATE TRIGGER user_stats_after_update
+    AFTER UPDATE OF user, difficulty, score ON GameReport
+    FOR EACH ROW
+BEGIN
+    DELETE FROM UserStats WHERE user = OLD.user AND difficulty = OLD.difficulty AND games = 1;
+    UPDATE UserStats SET
+        games = games - 1,
+        total_score = total_score - OLD.score,
+        max_score = CASE WHEN OLD.score < max_score THEN max_score ELSE
+            (SELECT MAX(score) FROM GameReport WHERE user = OLD.user AND difficulty = OLD.difficulty
+             AND id <> NEW.id) END
+    WHERE user = OLD.user AND difficulty = OLD.difficulty;
+    INSERT INTO UserStats (user, difficulty, games, total_score, max_score)
+    VALUES (NEW.user, NEW.difficulty, 1, NEW.score, NEW.score)
+    ON CONFLICT (user, difficulty) DO UPDATE SET
+        games = games + 1,
+        total_score = total_score + excluded.total_score,
+        max_score = MAX(max_score, excluded.max_score);
+END;
+
+-- Trigger su INSERT in UserStats: aggiunge le partite ai totali dell'utente
+CREATE TRIGGER user_totals_after_insert
+    AFTER INSERT ON UserStats
+    FOR EACH ROW
+BEGIN
+    INSERT INTO UserTotals (user, games, total_score, easy_games, medium_games, hard_games)
+    VALUES (NEW.user, NEW.games, NEW.total_score,
+            CASE NEW.difficulty WHEN 'EASY' THEN NEW.games ELSE 0 END,
+            CASE NEW.difficulty WHEN 'MEDIUM' THEN NEW.games ELSE 0 END,
+            CASE NEW.difficulty WHEN 'HARD' THEN NEW.games ELSE 0 END)
+    ON CONFLICT (user) DO UPDATE SET
+        games = games + excluded.games,
+        total_score = total_score + excluded.total_score,
+        easy_games = easy_games + excluded.easy_games,
+        medium_games = medium_games + excluded.medium_games,
+        hard_games = hard_games + excluded.hard_games;
+END;
+
+-- Trigger su UPDATE in UserStats: aggiorna i totali dell'utente con la differenza
+CREATE TRIGGER user_totals_after_update
+    AFTER UPDATE OF games, total_score ON UserStats
+    FOR EACH ROW
+BEGIN
+    UPDATE UserTotals SET
+        games = games + NEW.games - OLD.games,
+        total_score = total_score + NEW.total_score - OLD.total_score,
+        easy_games = easy_games + CASE NEW.difficulty WHEN 'EASY' THEN NEW.games - OLD.games ELSE 0 END,
+        medium_games = medium_games + CASE NEW.difficulty WHEN 'MEDIUM' THEN NEW.games - OLD.games ELSE 0 END,
+        hard_games = hard_games + CASE NEW.difficulty WHEN 'HARD' THEN NEW.games - OLD.games ELSE 0 END
+    WHERE user = NEW.user;
+END;
+
+-- Trigger su DELETE in UserStats: toglie le partite dai totali dell'utente
+CREATE TRIGGER user_totals_after_delete
+    AFTER DELETE ON UserStats
+    FOR EACH ROW
+BEGIN
+    DELETE FROM UserTotals WHERE user = OLD.user AND games = OLD.games;
+    UPDATE UserTotals SET
+        games = games - OLD.games,
+        total_score = total_score - OLD.total_score,
+        easy_games = easy_games - CASE OLD.difficulty WHEN 'EASY' THEN OLD.games ELSE 0 END,
+        medium_games = medium_games - CASE OLD.difficulty WHEN 'MEDIUM' THEN OLD.games ELSE 0 END,
+        hard_games = hard_games - CASE OLD.difficulty WHEN 'HARD' THEN OLD.games ELSE 0 END
+    WHERE user = OLD.user;
+END;
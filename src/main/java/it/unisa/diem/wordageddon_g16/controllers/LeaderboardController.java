@@ -2,12 +2,15 @@ package it.unisa.diem.wordageddon_g16.controllers;
 
 import it.unisa.diem.wordageddon_g16.models.AppContext;
 import it.unisa.diem.wordageddon_g16.models.Difficulty;
+import it.unisa.diem.wordageddon_g16.models.LeaderboardEntry;
 import it.unisa.diem.wordageddon_g16.services.LeaderboardService;
 import it.unisa.diem.wordageddon_g16.utility.ViewLoader;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.scene.control.Pagination;
+import javafx.scene.control.TabPane;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -18,21 +21,49 @@ import java.util.ResourceBundle;
  * Controller responsabile della gestione e visualizzazione della schermata di classifica.
  * <p>
  * Carica dinamicamente le classifiche globali e filtrate per difficoltà nella rispettiva {@link TableView}.
+ * Le classifiche vengono lette a pagine: una pagina viene caricata solo quando la sua scheda è selezionata
+ * e la pagina è mostrata dalla {@link Pagination}.
  * Utilizza {@link LeaderboardService} per ottenere i dati di gioco e {@link ViewLoader} per la navigazione.
  */
 public class LeaderboardController implements Initializable {
 
     @FXML
-    private TableView<LeaderboardService.LeaderboardEntry> globalTW;
+    private TableView<LeaderboardEntry> globalTW;
 
     @FXML
-    private TableView<LeaderboardService.LeaderboardEntry> easyTW;
+    private TableView<LeaderboardEntry> easyTW;
 
     @FXML
-    private TableView<LeaderboardService.LeaderboardEntry> mediumTW;
+    private TableView<LeaderboardEntry> mediumTW;
 
     @FXML
-    private TableView<LeaderboardService.LeaderboardEntry> hardTW;
+    private TableView<LeaderboardEntry> hardTW;
+
+    @FXML
+    private TabPane tabPane;
+
+    @FXML
+    private Pagination pagination;
+
+    /**
+     * Difficoltà di ciascuna scheda, nell'ordine delle schede; {@code null} per la classifica globale.
+     */
+    private static final Difficulty[] TAB_DIFFICULTIES = {null, Difficulty.EASY, Difficulty.MEDIUM, Difficulty.HARD};
+
+    /**
+     * Tabelle di ciascuna scheda, nello stesso ordine di {@link #TAB_DIFFICULTIES}.
+     */
+    private TableView<LeaderboardEntry>[] tables;
+
+    /**
+     * Ultima pagina mostrata in ciascuna scheda, ripristinata quando la scheda viene selezionata di nuovo.
+     */
+    private final int[] currentPages = new int[TAB_DIFFICULTIES.length];
+
+    /**
+     * Indica che la {@link Pagination} viene aggiornata per un cambio di scheda, e non per un cambio di pagina.
+     */
+    private boolean switchingTab;
 
     /**
      * Servizio di classifica utilizzato per ottenere i dati delle classifiche.
@@ -53,9 +84,9 @@ public class LeaderboardController implements Initializable {
      * Per ogni {@link TableView} (globale e per difficoltà):
      * <ul>
      *   <li>Configura la colonna dell'indice con un {@link TableCell} personalizzato</li>
-     *   <li>Collega le colonne ai campi di {@link LeaderboardService.LeaderboardEntry}</li>
-     *   <li>Popola i dati con {@code FXCollections.observableList(...)} per la difficoltà corrispondente</li>
+     *   <li>Collega le colonne ai campi di {@link LeaderboardEntry}</li>
      * </ul>
+     * Le tabelle vengono popolate a pagine alla selezione della scheda e a ogni cambio di pagina.
      *
      *
      * @param url non utilizzato
@@ -64,10 +95,10 @@ public class LeaderboardController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         // Effettuo la stessa configurazione per tutte le TableView
-        for (TableView<LeaderboardService.LeaderboardEntry> tableView : new TableView[]{globalTW, easyTW, mediumTW, hardTW}) {
+        for (TableView<LeaderboardEntry> tableView : new TableView[]{globalTW, easyTW, mediumTW, hardTW}) {
             tableView.setPlaceholder(new javafx.scene.control.Label("Nessun dato disponibile"));
 
-            var indexCol = (TableColumn<LeaderboardService.LeaderboardEntry, Integer>) tableView.getColumns().getFirst();
+            var indexCol = (TableColumn<LeaderboardEntry, Integer>) tableView.getColumns().getFirst();
             indexCol.setCellFactory(_ -> new TableCell<>() {
                 @Override
                 protected void updateItem(Integer item, boolean empty) {
@@ -75,31 +106,63 @@ public class LeaderboardController implements Initializable {
                     if (empty || getTableRow() == null || getTableRow().getItem() == null) {
                         setText(null);
                     } else {
-                        setText(String.valueOf(getIndex() + 1));
+                        setText(String.valueOf(getTableRow().getItem().rank()));
                     }
                 }
             });
 
             int i=1;
-            ((TableColumn<LeaderboardService.LeaderboardEntry, String>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new SimpleStringProperty(data.getValue().username()));
+            ((TableColumn<LeaderboardEntry, String>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new SimpleStringProperty(data.getValue().username()));
 
             if (tableView==globalTW)
-                ((TableColumn<LeaderboardService.LeaderboardEntry, String>) tableView.getColumns().get(i++)).setCellValueFactory(data -> {
+                ((TableColumn<LeaderboardEntry, String>) tableView.getColumns().get(i++)).setCellValueFactory(data -> {
                     var entry = data.getValue();
                     return new SimpleStringProperty(entry.favouriteDifficulty() == null ? "N/A" : entry.favouriteDifficulty().name());
                 });
 
-            ((TableColumn<LeaderboardService.LeaderboardEntry, Integer>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().averageScore()).asObject());
+            ((TableColumn<LeaderboardEntry, Integer>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().averageScore()).asObject());
 
-            ((TableColumn<LeaderboardService.LeaderboardEntry, Integer>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().totalScore()).asObject());
+            ((TableColumn<LeaderboardEntry, Integer>) tableView.getColumns().get(i++)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().totalScore()).asObject());
 
-            ((TableColumn<LeaderboardService.LeaderboardEntry, Integer>) tableView.getColumns().get(i)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().gamesPlayed()).asObject());
+            ((TableColumn<LeaderboardEntry, Integer>) tableView.getColumns().get(i)).setCellValueFactory(data -> new javafx.beans.property.SimpleIntegerProperty(data.getValue().gamesPlayed()).asObject());
 
         }
-        globalTW.setItems(FXCollections.observableList(leaderboardService.getGlobalLeaderboard()));
-        easyTW.setItems(FXCollections.observableList(leaderboardService.getLeaderboardByDifficulty(Difficulty.EASY)));
-        mediumTW.setItems(FXCollections.observableList(leaderboardService.getLeaderboardByDifficulty(Difficulty.MEDIUM)));
-        hardTW.setItems(FXCollections.observableList(leaderboardService.getLeaderboardByDifficulty(Difficulty.HARD)));
+        tables = new TableView[]{globalTW, easyTW, mediumTW, hardTW};
+        pagination.currentPageIndexProperty().addListener((_, _, page) -> {
+            if (!switchingTab) {
+                showPage(tabPane.getSelectionModel().getSelectedIndex(), page.intValue());
+            }
+        });
+        tabPane.getSelectionModel().selectedIndexProperty().addListener((_, _, tab) -> selectTab(tab.intValue()));
+        selectTab(tabPane.getSelectionModel().getSelectedIndex());
+    }
+
+    /**
+     * Aggiorna la {@link Pagination} per la scheda selezionata e ne carica la pagina corrente.
+     *
+     * @param tab indice della scheda selezionata
+     */
+    private void selectTab(int tab) {
+        int pageSize = leaderboardService.getPageSize();
+        int pageCount = Math.max(1, Math.ceilDiv(leaderboardService.getEntryCount(), pageSize));
+        switchingTab = true;
+        pagination.setPageCount(pageCount);
+        pagination.setCurrentPageIndex(Math.min(currentPages[tab], pageCount - 1));
+        switchingTab = false;
+        showPage(tab, pagination.getCurrentPageIndex());
+    }
+
+    /**
+     * Carica una pagina della classifica nella tabella di una scheda.
+     *
+     * @param tab  indice della scheda
+     * @param page indice della pagina, a partire da 0
+     */
+    private void showPage(int tab, int page) {
+        int pageSize = leaderboardService.getPageSize();
+        currentPages[tab] = page;
+        tables[tab].setItems(FXCollections.observableList(
+                leaderboardService.getLeaderboardPage(TAB_DIFFICULTIES[tab], page * pageSize, pageSize)));
     }
     /**
      * Gestisce il click sul pulsante "Indietro" e ritorna al menu principale.
@@ -16,7 +16,9 @@ import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -53,7 +55,7 @@ public class UserPanelController implements Initializable {
     private Pane adminPanel;
 
     @FXML
-    private TableColumn<GameReport, String> livelloClm;
+    private TableColumn<GameReportSummary, String> livelloClm;
 
     @FXML
     private Label totalGameLabel;
@@ -65,13 +67,34 @@ public class UserPanelController implements Initializable {
     private Label maxScoreLabel;
 
     @FXML
-    private TableColumn<GameReport, Integer> punteggioClm;
+    private TableColumn<GameReportSummary, Integer> punteggioClm;
 
     @FXML
-    private TableColumn<GameReport, String> tempoClm;
+    private TableColumn<GameReportSummary, String> tempoClm;
 
     @FXML
-    private TableView<GameReport> userTableView;
+    private TableView<GameReportSummary> userTableView;
+
+    /**
+     * Numero di riepiloghi letti per ogni pagina della cronologia delle partite.
+     */
+    private static final int REPORTS_PAGE_SIZE = 50;
+
+    /**
+     * Ultimo riepilogo letto dal database, da cui prosegue la pagina successiva; {@code null} se non ne è stato letto alcuno.
+     * Non coincide necessariamente con l'ultima riga della tabella, che l'utente può ordinare per colonna.
+     */
+    private GameReportSummary lastLoadedReport;
+
+    /**
+     * Indica se sono stati letti tutti i riepiloghi dell'utente corrente.
+     */
+    private boolean allReportsLoaded;
+
+    /**
+     * Barra di scorrimento verticale della tabella {@code userTableView}, {@code null} finché la skin non è stata creata.
+     */
+    private ScrollBar reportsScrollBar;
 
     @FXML
     private Label usernameLabel;
@@ -203,8 +226,8 @@ public class UserPanelController implements Initializable {
      *   <li>Caricamento di nuovi documenti con estensione ".txt" tramite {@link FileChooser}.</li>
      * </ul>
      * <p>
-     * Dopo il caricamento, viene avviato in background il calcolo automatico della WDM associata, tramite
-     * {@link UserPanelService#updateWDM(WDM)}.
+     * Dopo il caricamento, viene avviato in background il calcolo automatico dell'istogramma e della WDM associati, tramite
+     * {@link UserPanelService#analyzeDocument(Document)}.
      * </p>
      */
     @FXML
@@ -276,9 +299,9 @@ public class UserPanelController implements Initializable {
                     Task<Void> task = new Task<>() {
                         @Override
                         protected Void call() {
-                            // Creo la WDM e la inserisco nel database
-                            // l'update inserisce anche il documento associato se non esiste
-                            service.updateWDM(new WDM(tempDoc, service.getStopwords()));
+                            // Creo l'istogramma e la WDM e li inserisco nel database
+                            // l'analisi inserisce anche il documento associato se non esiste
+                            service.analyzeDocument(tempDoc);
                             return null;
                         }
                     };
@@ -344,9 +367,9 @@ public class UserPanelController implements Initializable {
      * <li>Rimozione selezionata di stopwords da una {@code ListView }</li>
      * </ul>
      * <p>
-     * Se viene rilevata una modifica alle stopwords, al termine della finestra
-     * viene avviato automaticamente il ricalcolo di tutte le WDM associate
-     * ai documenti esistenti nel sistema in modo ascrincono attraverso il thread pool
+     * Le modifiche alle stopwords vengono applicate direttamente alle WDM salvate. Se viene rilevata una modifica,
+     * al termine della finestra viene avviato in modo asincrono, attraverso il thread pool, il ricalcolo delle WDM
+     * dei soli documenti che non dispongono dei conteggi non filtrati
      * <p>
      */
     @FXML
@@ -366,9 +389,14 @@ public class UserPanelController implements Initializable {
 
         btnAdd.setOnAction(_ -> {
             isSWChanged.set(true);
-            service.addStopWords(tf.getText());
+            try {
+                service.addStopWords(tf.getText());
+                tf.clear();
+            } catch (Exception ex) {
+                SystemLogger.log("Errore durante l'aggiunta di una stopword", ex);
+            }
+            // Le stopword già salvate prima di un eventuale errore restano valide
             sw.getItems().setAll(service.getStopwords()); // Aggiorna la ListView senza duplicati
-            tf.clear();
         });
 
         /*
@@ -462,22 +490,23 @@ public class UserPanelController implements Initializable {
     }
 
     /**
-     * Avvia il ricalcolo parallelo delle {@link WDM} (Word Document Matrix) per tutti i documenti
-     * registrati nel database.
+     * Avvia il ricalcolo parallelo delle {@link WDM} (Word Document Matrix) per i documenti registrati nel database
+     * che non dispongono dei conteggi non filtrati ({@link UserPanelService#getDocumentsToRecalculate()}).
+     * Gli altri documenti sono già stati aggiornati al momento della modifica delle stopwords.
      *
      * Viene creato un {@link Task} per ogni documento, eseguito tramite un {@link ExecutorService} .
      * Ogni task aggiorna la matrice WDM associata invocando
-     * {@link UserPanelService#updateWDM(WDM)}.
+     * {@link UserPanelService#analyzeDocument(Document)}.
      *
      * Il metodo assicura che il ricalcolo non avvenga in parallelo ad altri ricalcoli
      * tramite il flag {@code isRecalculatingWDMs}, mentre eventuali richieste successive
      * vengono accodate tramite {@code needsRecalculation}.
      */
     private void reCalculateWDMs() {
-        System.out.println("Rilevata cancellazione di una stopword, ricalcolo la WDM per tutti i documenti...");
-        List<Document> allDocs = service.getAllDocuments().stream().toList();
+        List<Document> allDocs = service.getDocumentsToRecalculate();
+        System.out.println("Rilevata modifica delle stopword, ricalcolo la WDM per " + allDocs.size() + " documenti...");
         if (allDocs.isEmpty()) {
-            System.out.println("Nessun documento presente... Non é necessario ricalcolare le stopwords");
+            System.out.println("Nessun documento da ricalcolare... Le WDM sono già aggiornate");
             completeRecalculation();
             return;
         }
@@ -486,7 +515,7 @@ public class UserPanelController implements Initializable {
         List<Callable<Void>> taskList = new ArrayList<>();
         for (Document doc : allDocs) {
             taskList.add(() -> {
-                service.updateWDM(new WDM(doc, service.getStopwords()));
+                service.analyzeDocument(doc);
                 return null;
             });
         }
@@ -522,8 +551,8 @@ public class UserPanelController implements Initializable {
      * <ul>
      *  <li>Nome utente</li>
      *  <li>Visualizzazione dell' adminPanel solo se l’utente è un amministratore </li>
-     *  <li> Popolamento della tabella {@code userTableView} con i {@link GameReport} tramite la chiamata al metodo {@link UserPanelService#getCurrentUserReports()}</li>
-     *  <li>Calcolo attraverso il metodo {@link UserPanelService#getCurrentUserReports()} e visualizzazione delle statistiche dell’utente corrente come punteggio massimo, media, numero di partite giocate
+     *  <li> Popolamento della tabella {@code userTableView} con la prima pagina dei {@link GameReportSummary}; le pagine successive vengono lette tramite {@link #loadNextReportsPage()} quando la tabella viene scorsa fino in fondo, oppure finché le righe non bastano a riempirla. Il doppio clic su una riga mostra i documenti della partita</li>
+     *  <li>Lettura attraverso il metodo {@link UserPanelService#getUserStatsForCurrentUser()} e visualizzazione delle statistiche dell’utente corrente come punteggio massimo, media, numero di partite giocate
      * </ul>
      *
      */
@@ -552,12 +581,42 @@ public class UserPanelController implements Initializable {
         punteggioClm.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().score()));
         tempoClm.setCellValueFactory(report -> {
             Duration dur = report.getValue().usedTime();
-            String formatted = String.format("%02d:%02d", dur.toMinutesPart(), dur.toSecondsPart());
+            String formatted = String.format("%02d:%02d", dur.toMinutes(), dur.toSecondsPart());
             return new SimpleStringProperty(formatted);
         });
 
-        List<GameReport> reports = service.getCurrentUserReports();
-        userTableView.getItems().setAll(reports);
+        userTableView.setRowFactory(_ -> {
+            TableRow<GameReportSummary> row = new TableRow<>();
+            row.setOnMouseClicked(event -> {
+                if (event.getClickCount() == 2 && !row.isEmpty()) {
+                    showReportDocuments(row.getItem());
+                }
+            });
+            return row;
+        });
+
+        loadNextReportsPage();
+        // La barra di scorrimento viene creata insieme alla skin della tabella
+        userTableView.skinProperty().addListener((_, _, _) -> {
+            for (Node node : userTableView.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                    reportsScrollBar = bar;
+                    bar.valueProperty().addListener((_, _, value) -> {
+                        if (value.doubleValue() >= bar.getMax()) {
+                            loadNextReportsPage();
+                        }
+                    });
+                    bar.visibleProperty().addListener((_, _, visible) -> {
+                        if (!visible) {
+                            Platform.runLater(this::fillReportsTable);
+                        }
+                    });
+                }
+            }
+            Platform.runLater(this::fillReportsTable);
+        });
+        // Una tabella più alta può mostrare tutte le righe lette senza barra di scorrimento
+        userTableView.heightProperty().addListener((_, _, _) -> Platform.runLater(this::fillReportsTable));
 
 
         Map<String, Object> stats = service.getUserStatsForCurrentUser();
@@ -565,4 +624,59 @@ public class UserPanelController implements Initializable {
         avgScoreLabel.setText(String.format("%.1f", stats.get("averageScore")));
         maxScoreLabel.setText(String.valueOf(stats.get("maxScore")));
     }
-}
\ No newline at end of file
+
+    /**
+     * Aggiunge alla tabella {@code userTableView} la pagina successiva dei riepiloghi dell'utente corrente,
+     * proseguendo dall'ultimo riepilogo letto. Non esegue alcuna query se sono già stati letti tutti.
+     */
+    private void loadNextReportsPage() {
+        if (allReportsLoaded) {
+            return;
+        }
+        List<GameReportSummary> page = service.getCurrentUserReports(lastLoadedReport, REPORTS_PAGE_SIZE);
+        allReportsLoaded = page.size() < REPORTS_PAGE_SIZE;
+        if (!page.isEmpty()) {
+            lastLoadedReport = page.getLast();
+            userTableView.getItems().addAll(page);
+        }
+    }
+
+    /**
+     * Mostra in un popup i titoli dei documenti di una partita, letti solo all'apertura del report
+     * tramite {@link UserPanelService#getReportDocuments(GameReportSummary)}.
+     *
+     * @param summary il riepilogo del report selezionato
+     */
+    private void showReportDocuments(GameReportSummary summary) {
+        ListView<String> titles = new ListView<>();
+        try {
+            for (Document document : service.getReportDocuments(summary)) {
+                titles.getItems().add(document.title());
+            }
+        } catch (Exception e) {
+            SystemLogger.log("Errore durante la lettura dei documenti del report", e);
+            return;
+        }
+        Popup popup = new Popup("Documenti della partita", 400, 300);
+        popup.addAll(titles);
+        popup.show();
+    }
+
+    /**
+     * Legge altre pagine di riepiloghi finché la tabella {@code userTableView} non mostra la barra di scorrimento
+     * verticale o non sono stati letti tutti i riepiloghi.
+     * <p>
+     * Le pagine successive vengono altrimenti lette solo scorrendo la tabella fino in fondo, cosa impossibile
+     * se le righe già lette entrano tutte nella tabella. Non fa nulla finché la tabella non è stata disposta.
+     */
+    private void fillReportsTable() {
+        if (reportsScrollBar == null || userTableView.getHeight() <= 0) {
+            return;
+        }
+        userTableView.layout();
+        while (!allReportsLoaded && !reportsScrollBar.isVisible()) {
+            loadNextReportsPage();
+            userTableView.layout();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package it.unisa.diem.wordageddon_g16.db;
+
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool delle connessioni SQLite: una connessione di scrittura e alcune connessioni di sola lettura.
+ * <p>
+ * Il database viene portato in modalità {@code WAL}, in cui le letture non bloccano la scrittura e vedono
+ * l'ultimo stato confermato: le connessioni di lettura possono quindi essere usate da più thread in parallelo,
+ * anche mentre è in corso una transazione. Le scritture passano tutte dalla stessa connessione, protetta da un
+ * lock equo: i thread che vogliono scrivere vengono serviti uno alla volta, nell'ordine di arrivo, e una transazione
+ * non si mescola mai con le operazioni di altri thread.
+ * </p>
+ * <p>
+ * Un thread che ha già ottenuto una connessione la riutilizza per le operazioni annidate: le letture eseguite
+ * mentre il thread scrive, ad esempio all'interno di una transazione, passano dalla connessione di scrittura e
+ * vedono le modifiche non ancora confermate. Ogni connessione ha la propria {@link StatementCache}.
+ * </p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Operazione eseguita su una connessione del pool, tramite la sua cache di statement.
+     *
+     * @param <R> tipo del risultato dell'operazione
+     */
+    @FunctionalInterface
+    public interface ConnectionAction<R> {
+        /**
+         * Esegue l'operazione.
+         *
+         * @param statements la cache di statement della connessione assegnata
+         * @return risultato dell'operazione
+         * @throws SQLException se l'operazione fallisce
+         */
+        R run(StatementCache statements) throws SQLException;
+    }
+
+    /**
+     * Flag di apertura SQLite di una connessione di sola lettura ({@code SQLITE_OPEN_READONLY}).
+     */
+    private static final String READ_ONLY_OPEN_MODE = "1";
+
+    private final StatementCache writer;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final BlockingQueue<StatementCache> idleReaders;
+    private final List<StatementCache> readers = new ArrayList<>();
+
+    /**
+     * Connessione di lettura ottenuta dal thread corrente, {@code null} se il thread non ne ha una.
+     */
+    private final ThreadLocal<StatementCache> heldReader = new ThreadLocal<>();
+
+    /**
+     * Apre la connessione di scrittura, porta il database in modalità {@code WAL}, abilita le foreign key
+     * e apre le connessioni di lettura.
+     *
+     * @param url           URL JDBC del database
+     * @param readerCount   numero di connessioni di sola lettura, almeno 1
+     * @param cacheCapacity numero massimo di statement conservati nella cache di ciascuna connessione
+     * @throws SQLException se l'apertura di una connessione fallisce
+     */
+    public ConnectionPool(String url, int readerCount, int cacheCapacity) throws SQLException {
+        Connection writerConn = DriverManager.getConnection(url);
+        this.writer = new StatementCache(writerConn, cacheCapacity);
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+        try {
+            try (var stmt = writerConn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA foreign_keys = ON");
+            }
+            var readerProps = new Properties();
+            readerProps.setProperty("open_mode", READ_ONLY_OPEN_MODE);
+            for (int i = 0; i < Math.max(1, readerCount); i++) {
+                var reader = new StatementCache(DriverManager.getConnection(url, readerProps), cacheCapacity);
+                readers.add(reader);
+                try (var stmt = reader.getConnection().createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Esegue un'operazione di lettura.
+     * <p>
+     * L'operazione usa la connessione di scrittura se il thread corrente sta scrivendo, la connessione di lettura
+     * già ottenuta dal thread se presente, altrimenti una connessione di lettura libera, attendendone una se sono
+     * tutte in uso.
+     * </p>
+     *
+     * @param <R>    tipo del risultato dell'operazione
+     * @param action operazione da eseguire
+     * @return risultato dell'operazione
+     * @throws SQLException se l'operazione fallisce o se il thread viene interrotto durante l'attesa
+     */
+    public <R> R read(ConnectionAction<R> action) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) {
+            return action.run(writer);
+        }
+        var held = heldReader.get();
+        if (held != null) {
+            return action.run(held);
+        }
+        StatementCache reader;
+        try {
+            reader = idleReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        heldReader.set(reader);
+        try {
+            return action.run(reader);
+        } finally {
+            heldReader.remove();
+            idleReaders.add(reader);
+        }
+    }
+
+    /**
+     * Esegue un'operazione di scrittura sulla connessione di scrittura, dopo aver atteso il proprio turno.
+     * Le operazioni annidate dello stesso thread non attendono.
+     *
+     * @param <R>    tipo del risultato dell'operazione
+     * @param action operazione da eseguire
+     * @return risultato dell'operazione
+     * @throws SQLException se l'operazione fallisce
+     */
+    public <R> R write(ConnectionAction<R> action) throws SQLException {
+        writeLock.lock();
+        try {
+            return action.run(writer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce i contatori di utilizzo delle cache di statement, sommati su tutte le connessioni.
+     *
+     * @return i contatori correnti
+     */
+    public StatementCache.Stats getStatementCacheStats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (var cache : allCaches()) {
+            var stats = cache.getStats();
+            hits += stats.hits();
+            misses += stats.misses();
+            evictions += stats.evictions();
+        }
+        return new StatementCache.Stats(hits, misses, evictions);
+    }
+
+    /**
+     * Chiude le cache di statement e le connessioni del pool.
+     * <p>
+     * In caso di errore durante la chiusura, viene registrato tramite {@link SystemLogger}.
+     */
+    @Override
+    public void close() {
+        for (var cache : allCaches()) {
+            cache.close();
+            try {
+                cache.getConnection().close();
+            } catch (SQLException e) {
+                SystemLogger.log("Could not close the database connection: ", e);
+            }
+        }
+    }
+
+    private List<StatementCache> allCaches() {
+        var caches = new ArrayList<StatementCache>(readers.size() + 1);
+        caches.add(writer);
+        caches.addAll(readers);
+        return caches;
+    }
+}
@@ -7,7 +7,6 @@ import it.unisa.diem.wordageddon_g16.models.Document;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
 import javafx.util.Callback;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -22,12 +21,12 @@ import java.util.Optional;
 public class JDBCDocumentDAO extends JdbcDAO<Document> implements DocumentDAO {
 
     /**
-     * Costruisce un nuovo DocumentDAO utilizzando la connessione specificata.
+     * Costruisce un nuovo DocumentDAO utilizzando il pool di connessioni specificato.
      *
-     * @param conn la connessione al database da utilizzare per le operazioni
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
      */
-    public JDBCDocumentDAO(Connection conn) {
-        super(conn);
+    public JDBCDocumentDAO(ConnectionPool pool) {
+        super(pool);
     }
 
     /**
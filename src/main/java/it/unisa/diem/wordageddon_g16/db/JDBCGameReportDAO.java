@@ -1,9 +1,7 @@
 package it.unisa.diem.wordageddon_g16.db;
 
-import it.unisa.diem.wordageddon_g16.db.contracts.DAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.DocumentDAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.GameReportDAO;
-import it.unisa.diem.wordageddon_g16.db.contracts.UserDAO;
 import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
 import it.unisa.diem.wordageddon_g16.db.exceptions.UpdateFailedException;
 import it.unisa.diem.wordageddon_g16.models.*;
@@ -13,9 +11,7 @@ import javafx.util.Callback;
 import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 /**
  * Implementazione JDBC del {@link DocumentDAO}, che gestisce le operazioni sui report.
@@ -26,26 +22,40 @@ import java.util.Optional;
 public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReportDAO {
 
     /**
-     * DAO utilizzato per la gestione degli utenti associati ai report di gioco.
+     * Colonne lette dalla query di caricamento dei report: i campi del report, dell'utente autore
+     * e dei documenti associati, una riga per ciascun documento.
      */
-    private final UserDAO userDAO;
+    private static final String REPORT_COLUMNS = """
+            SELECT r.id, r.user, r.timestamp, r.difficulty, r.max_time, r.used_time, r.question_count, r.score,
+                   u.password, u.isAdmin, d.id AS document, d.title, d.word_count
+            """;
 
     /**
-     * DAO utilizzato per la gestione dei documenti associati ai report di gioco.
+     * Join che completa i report selezionati con l'utente e i documenti. L'ordinamento è aggiunto dalla query,
+     * e deve mantenere consecutive le righe di uno stesso report.
+     * <p>
+     * La colonna {@code Content.document} è dichiarata {@code INTEGER} ma contiene il nome del file:
+     * il confronto con {@code Document.id} avviene sul testo, altrimenti SQLite non può usare la chiave primaria
+     * di {@code Document} e scorre l'intera tabella per ogni documento.
      */
-    private final DocumentDAO documentDAO;
+    private static final String REPORT_JOINS = """
+            JOIN User u ON u.name = r.user
+            LEFT JOIN Content c ON c.report = r.id
+            LEFT JOIN Document d ON d.id = CAST(c.document AS TEXT)
+            """;
 
     /**
-     * Costruisce un nuovo {@code JDBCGameReportDAO} utilizzando la connessione e i DAO specificati.
+     * Ordinamento dei report per id, con i documenti di ciascun report nell'ordine di inserimento.
+     */
+    private static final String ORDER_BY_ID = "ORDER BY r.id, c.rowid";
+
+    /**
+     * Costruisce un nuovo {@code JDBCGameReportDAO} utilizzando il pool di connessioni specificato.
      *
-     * @param conn        la connessione al database da utilizzare per le operazioni
-     * @param documentDAO il DAO per la gestione dei documenti
-     * @param userDAO     il DAO per la gestione degli utenti
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
      */
-    public JDBCGameReportDAO(Connection conn, DAO<Document> documentDAO, DAO<User> userDAO) {
-        super(conn);
-        this.userDAO = (UserDAO) userDAO;
-        this.documentDAO = (DocumentDAO) documentDAO;
+    public JDBCGameReportDAO(ConnectionPool pool) {
+        super(pool);
     }
 
     /**
@@ -58,7 +68,7 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
      */
     @Override
     public Optional<GameReport> selectBy(User user, Timestamp timestamp) {
-        return selectWhere("user = ? AND timestamp = ?", user, timestamp).stream().findFirst();
+        return selectWhere("user = ? AND timestamp = ?", user.getName(), timestamp.getTime()).stream().findFirst();
     }
 
     /**
@@ -69,7 +79,7 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
      */
     @Override
     public List<GameReport> selectAll() {
-        return selectBase("SELECT * FROM GameReport");
+        return selectBase(REPORT_COLUMNS + "FROM GameReport r\n" + REPORT_JOINS + ORDER_BY_ID);
     }
 
     /**
@@ -81,13 +91,328 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
      * @throws QueryFailedException se si verifica un errore durante la query
      */
     public List<GameReport> selectWhere(String sqlClause, Object... params) {
-        String query = "SELECT * FROM GameReport WHERE " + sqlClause;
+        // La clausola si riferisce alle colonne di GameReport: viene applicata in una sottoquery
+        // per non renderla ambigua rispetto alle colonne delle tabelle in join
+        String query = REPORT_COLUMNS + "FROM (SELECT * FROM GameReport WHERE " + sqlClause + ") r\n" + REPORT_JOINS + ORDER_BY_ID;
         return selectBase(query, params);
     }
 
+    /**
+     * Recupera i riepiloghi dei report di un utente dal più recente, una pagina alla volta.
+     * <p>
+     * I riepiloghi sono letti dalla sola tabella {@code GameReport}, senza utenti né documenti, e la query usa
+     * l'indice su {@code GameReport(user, timestamp)}: il costo dipende dai report dell'utente letti e non dal
+     * numero totale di report. La paginazione è per chiave: la pagina successiva si ottiene passando come
+     * {@code after} l'ultimo riepilogo ricevuto. Più report dello stesso utente possono avere lo stesso timestamp,
+     * per cui la chiave è la coppia {@code (timestamp, id)}; l'id è l'ultima colonna implicita dell'indice,
+     * che resta sufficiente sia per il filtro sia per l'ordinamento.
+     * </p>
+     *
+     * @param user  l'utente autore dei report
+     * @param after ultimo riepilogo della pagina precedente, escluso, {@code null} per partire dal report più recente
+     * @param limit numero massimo di riepiloghi, negativo per leggerli tutti
+     * @return i riepiloghi dei report dell'utente, dal più recente al meno recente
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<GameReportSummary> selectSummariesByUser(User user, GameReportSummary after, int limit) {
+        String query = after == null
+                ? "SELECT * FROM GameReport WHERE user = ? ORDER BY timestamp DESC, id DESC LIMIT ?"
+                : "SELECT * FROM GameReport WHERE user = ? AND (timestamp, id) < (?, ?) ORDER BY timestamp DESC, id DESC LIMIT ?";
+        Object[] params = after == null
+                ? new Object[]{user.getName(), limit}
+                : new Object[]{user.getName(), toEpochMillis(after.timestamp()), after.id(), limit};
+        return executeQuery(query, res -> {
+            var result = new ArrayList<GameReportSummary>();
+            try {
+                while (res.next()) {
+                    result.add(new GameReportSummary(
+                            res.getLong("id"),
+                            res.getString("user"),
+                            fromEpochMillis(res.getLong("timestamp")),
+                            Difficulty.valueOf(res.getString("difficulty")),
+                            Duration.ofMillis(res.getLong("max_time")),
+                            Duration.ofMillis(res.getLong("used_time")),
+                            res.getInt("question_count"),
+                            res.getInt("score")
+                    ));
+                }
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get game reports of user: " + user.getName(), e);
+                throw new QueryFailedException(e.getMessage());
+            }
+            return result;
+        }, params);
+    }
+
+    /**
+     * Recupera i documenti di un report, nell'ordine in cui sono stati associati alla partita.
+     *
+     * @param summary il riepilogo del report, identificato dal suo id
+     * @return i documenti del report, vuota se il report non esiste
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<Document> selectDocuments(GameReportSummary summary) {
+        String query = """
+                SELECT d.id, d.title, d.word_count
+                FROM Content c
+                JOIN Document d ON d.id = CAST(c.document AS TEXT)
+                WHERE c.report = ?
+                ORDER BY c.rowid
+                """;
+        return executeQuery(query, res -> {
+            var result = new ArrayList<Document>();
+            try {
+                while (res.next()) {
+                    result.add(new Document(res.getString("id"), res.getString("title"), res.getInt("word_count")));
+                }
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get documents of game report", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+            return result;
+        }, summary.id());
+    }
+
+    /**
+     * Tabella e filtro da cui leggere la classifica: i totali per utente per la classifica globale,
+     * le statistiche della difficoltà indicata altrimenti. Entrambe le tabelle hanno un indice sul punteggio medio
+     * ({@code total_score / games}) decrescente e sul nome utente, nell'ordine della classifica.
+     */
+    private static String rankingSource(Difficulty difficulty) {
+        return difficulty == null ? "UserTotals s WHERE 1" : "UserStats s WHERE s.difficulty = '" + difficulty.name() + "'";
+    }
+
+    /**
+     * Recupera una pagina della classifica dei giocatori.
+     * <p>
+     * I giocatori sono ordinati per punteggio medio decrescente e, a parità di media, per nome utente; seguono,
+     * in ordine di nome, gli utenti che non hanno partite (alla difficoltà indicata) con statistiche nulle.
+     * Le voci vengono lette dagli indici di classifica sulle tabelle {@code UserTotals} e {@code UserStats},
+     * per cui il costo dipende dalla pagina richiesta e non dal numero di partite giocate.
+     * La difficoltà preferita è quella più giocata (a parità di partite, la più difficile).
+     * </p>
+     *
+     * @param difficulty difficoltà a cui limitare la classifica, {@code null} per la classifica globale
+     * @param offset     posizione in classifica (a partire da 0) della prima voce
+     * @param limit      numero massimo di voci
+     * @return le voci della pagina, in ordine di classifica; la difficoltà preferita è valorizzata
+     *         solo nella classifica globale
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    public List<LeaderboardEntry> selectLeaderboard(Difficulty difficulty, int offset, int limit) {
+        String favourite = difficulty != null ? "NULL" : """
+                CASE
+                    WHEN s.hard_games >= s.medium_games AND s.hard_games >= s.easy_games THEN 'HARD'
+                    WHEN s.medium_games >= s.easy_games THEN 'MEDIUM'
+                    ELSE 'EASY'
+                END""";
+        String ranked = """
+                SELECT s.user AS name, s.total_score, s.games AS games_played,
+                       s.total_score / s.games AS average_score, %s AS favourite_difficulty
+                FROM %s
+                ORDER BY s.total_score / s.games DESC, s.user
+                LIMIT ? OFFSET ?
+                """.formatted(favourite, rankingSource(difficulty));
+        var result = new ArrayList<LeaderboardEntry>(Math.max(limit, 0));
+        Callback<ResultSet, List<LeaderboardEntry>> callback = res -> {
+            try {
+                while (res.next()) {
+                    String difficultyName = res.getString("favourite_difficulty");
+                    result.add(new LeaderboardEntry(
+                            offset + result.size() + 1,
+                            res.getString("name"),
+                            difficultyName != null ? Difficulty.valueOf(difficultyName) : null,
+                            res.getInt("average_score"),
+                            res.getInt("total_score"),
+                            res.getInt("games_played")
+                    ));
+                }
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get the leaderboard", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+            return result;
+        };
+        executeQuery(ranked, callback, limit, offset);
+        if (result.size() < limit) {
+            // La pagina prosegue con gli utenti senza partite: la loro posizione si ottiene togliendo i giocatori in classifica
+            int rankedCount = result.isEmpty() ? countRanked(difficulty) : offset + result.size();
+            String unranked = """
+                    SELECT u.name, 0 AS total_score, 0 AS games_played, 0 AS average_score, NULL AS favourite_difficulty
+                    FROM User u
+                    WHERE NOT EXISTS (SELECT 1 FROM %s AND s.user = u.name)
+                    ORDER BY u.name
+                    LIMIT ? OFFSET ?
+                    """.formatted(rankingSource(difficulty));
+            executeQuery(unranked, callback, limit - result.size(), Math.max(0, offset - rankedCount));
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero di voci della classifica, ossia il numero di utenti registrati.
+     *
+     * @return il numero di voci della classifica
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    public int countLeaderboard() {
+        return countOf("SELECT COUNT(*) FROM User");
+    }
+
+    /**
+     * Restituisce la posizione in classifica di un utente.
+     *
+     * @param difficulty difficoltà a cui limitare la classifica, {@code null} per la classifica globale
+     * @param username   il nome dell'utente
+     * @return la posizione dell'utente a partire da 0, oppure -1 se l'utente non esiste
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    public int selectRank(Difficulty difficulty, String username) {
+        String source = rankingSource(difficulty);
+        // Giocatori con media maggiore, più quelli con la stessa media e nome precedente
+        int rank = countOf("""
+                SELECT (SELECT COUNT(*) FROM %1$s AND s.total_score / s.games > own.average_score)
+                     + (SELECT COUNT(*) FROM %1$s AND s.total_score / s.games = own.average_score AND s.user < own.user)
+                FROM (SELECT s.user, s.total_score / s.games AS average_score FROM %1$s AND s.user = ?) own
+                """.formatted(source), username);
+        if (rank >= 0) {
+            return rank;
+        }
+        // Utente senza partite: segue tutti i giocatori in classifica e gli utenti senza partite con nome precedente
+        return countOf("""
+                SELECT (SELECT COUNT(*) FROM %1$s)
+                     + (SELECT COUNT(*) FROM User u WHERE u.name < own.name AND NOT EXISTS (SELECT 1 FROM %1$s AND s.user = u.name))
+                FROM User own WHERE own.name = ?
+                """.formatted(source), username);
+    }
+
+    /**
+     * Restituisce il numero di giocatori con almeno una partita nella classifica indicata.
+     */
+    private int countRanked(Difficulty difficulty) {
+        return countOf("SELECT COUNT(*) FROM " + rankingSource(difficulty));
+    }
+
+    /**
+     * Esegue una query che restituisce un unico numero intero.
+     *
+     * @return il valore letto, oppure -1 se la query non restituisce righe
+     */
+    private int countOf(String query, Object... params) {
+        return executeQuery(query, res -> {
+            try {
+                return res.next() ? res.getInt(1) : -1;
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to count leaderboard entries", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+        }, params);
+    }
+
+    /**
+     * Recupera le statistiche aggregate delle partite di un utente dalla tabella {@code UserStats},
+     * una per ciascuna difficoltà giocata.
+     *
+     * @param user l'utente di cui leggere le statistiche
+     * @return le statistiche dell'utente, vuota se non ha giocato partite
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<UserStats> selectStats(User user) {
+        String query = "SELECT * FROM UserStats WHERE user = ?";
+        return executeQuery(query, res -> {
+            var result = new ArrayList<UserStats>();
+            try {
+                while (res.next()) {
+                    result.add(new UserStats(
+                            res.getString("user"),
+                            Difficulty.valueOf(res.getString("difficulty")),
+                            res.getInt("games"),
+                            res.getInt("total_score"),
+                            res.getInt("max_score")
+                    ));
+                }
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get stats of user: " + user.getName(), e);
+                throw new QueryFailedException(e.getMessage());
+            }
+            return result;
+        }, user.getName());
+    }
+
+    /**
+     * Ricalcola dai report tutte le righe delle tabelle {@code UserStats} e {@code UserTotals}.
+     * <p>
+     * Le statistiche sono mantenute dai trigger sui report, per cui il ricalcolo serve solo come verifica di coerenza:
+     * prima di sostituirle, le righe salvate vengono confrontate con quelle ricalcolate e le differenze registrate nel log.
+     * I totali vengono svuotati per primi, così che i trigger di {@code UserStats} non li aggiornino a partire da valori
+     * già errati, e vengono poi sostituiti con quelli calcolati dai report nella stessa transazione.
+     * </p>
+     *
+     * @return il numero di righe di statistiche e di totali che non corrispondevano ai report e sono state corrette
+     * @throws UpdateFailedException se si verifica un errore durante il ricalcolo
+     */
+    @Override
+    public int rebuildStats() {
+        String computedStats = """
+                SELECT user, difficulty, COUNT(*) AS games, SUM(score) AS total_score, MAX(score) AS max_score
+                FROM GameReport
+                WHERE user IN (SELECT name FROM User)
+                GROUP BY user, difficulty""";
+        String storedStats = "SELECT user, difficulty, games, total_score, max_score FROM UserStats";
+        String computedTotals = """
+                SELECT user, COUNT(*) AS games, SUM(score) AS total_score,
+                       SUM(difficulty = 'EASY') AS easy_games,
+                       SUM(difficulty = 'MEDIUM') AS medium_games,
+                       SUM(difficulty = 'HARD') AS hard_games
+                FROM GameReport
+                WHERE user IN (SELECT name FROM User)
+                GROUP BY user""";
+        String storedTotals = "SELECT user, games, total_score, easy_games, medium_games, hard_games FROM UserTotals";
+        // Coppie utente-difficoltà e utenti con una riga errata, mancante o superflua
+        String countMismatches = "SELECT (SELECT COUNT(*) FROM ("
+                + "SELECT user, difficulty FROM (" + storedStats + " EXCEPT " + computedStats + ")"
+                + " UNION SELECT user, difficulty FROM (" + computedStats + " EXCEPT " + storedStats + ")))"
+                + " + (SELECT COUNT(*) FROM ("
+                + "SELECT user FROM (" + storedTotals + " EXCEPT " + computedTotals + ")"
+                + " UNION SELECT user FROM (" + computedTotals + " EXCEPT " + storedTotals + ")))";
+        try {
+            int mismatches = executeInTransaction(() -> {
+                int count = executeQuery(countMismatches, res -> {
+                    try {
+                        return res.next() ? res.getInt(1) : 0;
+                    } catch (SQLException e) {
+                        throw new QueryFailedException(e.getMessage());
+                    }
+                });
+                executeUpdate("DELETE FROM UserTotals");
+                executeUpdate("DELETE FROM UserStats");
+                executeUpdate("INSERT INTO UserStats (user, difficulty, games, total_score, max_score) " + computedStats);
+                // I trigger hanno già reinserito i totali a partire da UserStats: vengono sostituiti con quelli dei report
+                executeUpdate("DELETE FROM UserTotals");
+                executeUpdate("INSERT INTO UserTotals (user, games, total_score, easy_games, medium_games, hard_games) "
+                        + computedTotals);
+                return count;
+            });
+            if (mismatches > 0) {
+                SystemLogger.log("Rebuilt user stats, " + mismatches + " rows did not match the game reports", null);
+            }
+            return mismatches;
+        } catch (SQLException e) {
+            SystemLogger.log("Error trying to rebuild user stats", e);
+            throw new UpdateFailedException(e.getMessage());
+        }
+    }
+
     /**
      * Metodo interno di utilità per eseguire una query di selezione e mappare i risultati in oggetti {@link GameReport}.
-     * Recupera anche i documenti associati tramite la tabella {@code Content}.
+     * <p>
+     * La query restituisce, in join, report, utente e documenti associati tramite la tabella {@code Content},
+     * con le righe di ciascun report consecutive: i report vengono costruiti in un'unica passata sul risultato,
+     * senza query aggiuntive per utenti e documenti. Utenti e documenti che compaiono in più report
+     * vengono istanziati una sola volta.
      *
      * @param query  la query SQL completa da eseguire
      * @param params i parametri da usare nella query
@@ -101,43 +426,41 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
                 if (res == null) {
                     return result;
                 }
+                Map<String, User> users = new HashMap<>();
+                Map<String, Document> documents = new HashMap<>();
+                long currentId = 0;
+                List<Document> docList = null;
                 while (res.next()) {
-                    var user = userDAO.selectBy(res.getString("user"));
-                    var docList = executeQuery(
-                            "SELECT document FROM Content WHERE report = ?",
-                            docs -> {
-                                List<Document> documents = new ArrayList<>();
-                                try {
-                                    while (docs.next()) {
-                                        documentDAO.selectBy(docs.getString("document")).ifPresent(documents::add);
-                                    }
-                                } catch (SQLException e) {
-                                    SystemLogger.log("Error trying to get documents", e);
-                                    throw new QueryFailedException(e.getMessage());
-                                }
-                                return documents;
-                            },
-                            res.getLong("id")
-                    );
-                    String[] maxParts = res.getString("max_time").split(":");
-                    Duration maxTime = Duration.ofMinutes(Long.parseLong(maxParts[0]))
-                            .plusSeconds(Long.parseLong(maxParts[1]));
-                    String[] usedParts = res.getString("used_time").split(":");
-                    Duration usedTime = Duration.ofMinutes(Long.parseLong(usedParts[0]))
-                            .plusSeconds(Long.parseLong(usedParts[1]));
-                    LocalDateTime timestamp = new Timestamp(res.getLong("timestamp")).toLocalDateTime();
-                    if (user.isPresent()) {
+                    long id = res.getLong("id");
+                    if (docList == null || id != currentId) {
+                        currentId = id;
+                        docList = new ArrayList<>();
+                        String name = res.getString("user");
+                        var user = users.get(name);
+                        if (user == null) {
+                            user = new User(name, res.getString("password"), res.getBoolean("isAdmin"));
+                            users.put(name, user);
+                        }
                         result.add(new GameReport(
-                                user.get(),
+                                user,
                                 docList,
-                                timestamp,
+                                fromEpochMillis(res.getLong("timestamp")),
                                 Difficulty.valueOf(res.getString("difficulty")),
-                                maxTime,
-                                usedTime,
+                                Duration.ofMillis(res.getLong("max_time")),
+                                Duration.ofMillis(res.getLong("used_time")),
                                 res.getInt("question_count"),
                                 res.getInt("score")
                         ));
                     }
+                    String filename = res.getString("document");
+                    if (filename != null) {
+                        var document = documents.get(filename);
+                        if (document == null) {
+                            document = new Document(filename, res.getString("title"), res.getInt("word_count"));
+                            documents.put(filename, document);
+                        }
+                        docList.add(document);
+                    }
                 }
             } catch (SQLException e) {
                 SystemLogger.log("Error trying to get all game reports", e);
@@ -148,9 +471,31 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
         return executeQuery(query, callback, params);
     }
 
+    /**
+     * Converte un timestamp nei millisecondi dall'epoch con cui è salvato nella colonna {@code timestamp}.
+     *
+     * @param timestamp il timestamp, nel fuso orario locale
+     * @return i millisecondi dall'epoch
+     */
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return Timestamp.valueOf(timestamp).getTime();
+    }
+
+    /**
+     * Converte i millisecondi dall'epoch salvati nella colonna {@code timestamp} in un timestamp locale.
+     *
+     * @param millis i millisecondi dall'epoch
+     * @return il timestamp, nel fuso orario locale
+     */
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return new Timestamp(millis).toLocalDateTime();
+    }
+
     /**
      * Inserisce un nuovo {@link GameReport} nel database e associa i documenti
-     * tramite la tabella {@code Content}.
+     * tramite la tabella {@code Content}. Le statistiche in {@code UserStats} vengono
+     * aggiornate nella stessa transazione dai trigger sulla tabella {@code GameReport}.
+     * Il timestamp è salvato in millisecondi dall'epoch, le durate in millisecondi.
      *
      * @param gameReport il report da salvare
      * @throws QueryFailedException se si verifica un errore durante l'inserimento
@@ -160,46 +505,31 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
         String insertReport = "INSERT INTO GameReport (user, timestamp, difficulty, max_time, used_time, question_count, score) VALUES (?, ?, ?, ?, ?, ?, ?)";
         String insertContent = "INSERT INTO Content (report, document) VALUES (?, ?)";
         try {
-            long usedTotalSeconds = gameReport.usedTime().getSeconds();
-            String usedTimeFormatted = preFormatTime(usedTotalSeconds);
-            long maxTotalSeconds = gameReport.maxTime().getSeconds();
-            String maxTimeFormatted = preFormatTime(maxTotalSeconds);
-            long reportId=executeUpdate(insertReport,
-                    gameReport.user().getName(),
-                    Timestamp.valueOf(gameReport.timestamp()),
-                    gameReport.difficulty().name(),
-                    maxTimeFormatted,
-                    usedTimeFormatted,
-                    gameReport.questionCount(),
-                    gameReport.score()
-            );
+            // Il report, i suoi documenti e le statistiche aggiornate dai trigger vengono salvati insieme
+            executeInTransaction(() -> {
+                long reportId = executeUpdate(insertReport,
+                        gameReport.user().getName(),
+                        toEpochMillis(gameReport.timestamp()),
+                        gameReport.difficulty().name(),
+                        gameReport.maxTime().toMillis(),
+                        gameReport.usedTime().toMillis(),
+                        gameReport.questionCount(),
+                        gameReport.score()
+                );
 
-            for (Document document : gameReport.documents()) {
-                executeUpdate(insertContent, reportId, document.filename());
-            }
+                for (Document document : gameReport.documents()) {
+                    executeUpdate(insertContent, reportId, document.filename());
+                }
+                return reportId;
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error trying to insert game report", e);
             throw new QueryFailedException(e.getMessage());
         }
     }
-    /**
-     * Formatta un valore temporale (in secondi) in una stringa nel formato MM:SS.
-     * Garantisce che il tempo formattato rispetti i vincoli del database:
-     * @param time il tempo da formattare
-     * @return una {@code String} nel formato "MM:SS" che rappresenta il tempo normalizzato
-     */
-    private String preFormatTime(long time) {
-        long minutes = Math.min(time / 60, 60);
-        long seconds = time % 60;
-        //Duration contiene frazioni di secondo, che vengono troncate per i vincoli del db
-        if (minutes == 60 && seconds > 0) {
-            seconds = 0;
-        }
-        return String.format("%02d:%02d", minutes, seconds);
-    }
 
     /**
-     * Aggiorna un {@link GameReport} esistente nel database.
+     * Aggiorna un {@link GameReport} esistente nel database, identificato da utente e timestamp.
      * <p>
      * Nota: questa operazione modifica solo la tabella {@code GameReport},
      * non la tabella {@code Content}.
@@ -209,16 +539,16 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
      */
     @Override
     public void update(GameReport gameReport) {
-        String update = "UPDATE GameReport SET user = ?, timestamp = ?, difficulty = ?, max_time = ?, used_time = ?, question_count = ?, score = ? WHERE id = ?";
+        String update = "UPDATE GameReport SET difficulty = ?, max_time = ?, used_time = ?, question_count = ?, score = ? WHERE user = ? AND timestamp = ?";
         try {
             executeUpdate(update,
-                    gameReport.user().getName(),
-                    gameReport.timestamp(),
                     gameReport.difficulty().name(),
-                    gameReport.maxTime().toString(),
-                    gameReport.usedTime().toString(),
+                    gameReport.maxTime().toMillis(),
+                    gameReport.usedTime().toMillis(),
                     gameReport.questionCount(),
-                    gameReport.score()
+                    gameReport.score(),
+                    gameReport.user().getName(),
+                    toEpochMillis(gameReport.timestamp())
             );
         } catch (SQLException e) {
             SystemLogger.log("Error trying to update game report", e);
@@ -239,7 +569,7 @@ public class JDBCGameReportDAO extends JdbcDAO<GameReport> implements GameReport
     public void delete(GameReport gameReport) {
         String updateOnReport = "DELETE FROM GameReport WHERE user = ? AND timestamp = ?";
         try {
-            executeUpdate(updateOnReport, gameReport.user().getName(), Timestamp.valueOf(gameReport.timestamp()));
+            executeUpdate(updateOnReport, gameReport.user().getName(), toEpochMillis(gameReport.timestamp()));
         } catch (SQLException e) {
             SystemLogger.log("Error trying to delete game report", e);
             throw new UpdateFailedException(e.getMessage());
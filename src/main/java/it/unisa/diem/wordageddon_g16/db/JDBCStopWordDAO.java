@@ -7,7 +7,6 @@ import it.unisa.diem.wordageddon_g16.models.Document;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
 import javafx.util.Callback;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
@@ -16,17 +15,20 @@ import java.util.*;
  * Implementazione JDBC del {@link StopWordDAO}, che gestisce le operazioni sulle stopwords.
  * <p>
  * Le stopwords sono salvati nella tabella {@code StopWord}.
+ * L'aggiunta o la rimozione di una stopword aggiorna nella stessa transazione le WDM salvate e il numero di parole
+ * dei documenti: le righe vengono eliminate dalla tabella {@code WDM} oppure ripristinate a partire dai conteggi
+ * non filtrati della tabella {@code DocumentTerm}, senza rileggere i file dei documenti.
  * Tutte le interazioni con il database sono gestite tramite {@link JdbcDAO}, con logging automatico via {@link SystemLogger}.
  */
 public class JDBCStopWordDAO extends JdbcDAO<String> implements StopWordDAO {
 
     /**
-     * Costruisce un nuovo {@code JDBCStopWordDAO} utilizzando la connessione specificata.
+     * Costruisce un nuovo {@code JDBCStopWordDAO} utilizzando il pool di connessioni specificato.
      *
-     * @param conn la connessione al database da utilizzare per le operazioni
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
      */
-    public JDBCStopWordDAO(Connection conn) {
-        super(conn);
+    public JDBCStopWordDAO(ConnectionPool pool) {
+        super(pool);
     }
 
     /**
@@ -54,9 +56,12 @@ public class JDBCStopWordDAO extends JdbcDAO<String> implements StopWordDAO {
     }
 
     /**
-     * Inserisce una nuova stopword nel database.
+     * Inserisce una nuova stopword nel database ed esclude il termine da tutte le WDM.
      * <p>
      * Se la parola è già presente, non viene eseguita alcuna operazione grazie all'uso di {@code INSERT OR IGNORE}.
+     * Il numero di parole dei documenti che contenevano il termine viene ricalcolato come somma delle frequenze
+     * rimaste nella loro WDM: un documento composto solo da stopword resta salvato con 0 parole e una WDM vuota,
+     * e non viene più scelto per le partite.
      *
      * @param s la stopword da inserire
      * @throws QueryFailedException se si verifica un errore durante l'inserimento
@@ -64,8 +69,20 @@ public class JDBCStopWordDAO extends JdbcDAO<String> implements StopWordDAO {
     @Override
     public void insert(String s) {
         String query = "INSERT OR IGNORE INTO StopWord (word) VALUES (?)";
+        String wordCountQuery = """
+                UPDATE Document SET word_count = (
+                    SELECT COALESCE(SUM(w.occurrences), 0) FROM WDM w JOIN Term t ON t.id = w.term
+                    WHERE w.document = Document.id AND t.word <> ?)
+                WHERE id IN (SELECT w.document FROM WDM w JOIN Term t ON t.id = w.term WHERE t.word = ?)""";
+        String wdmQuery = "DELETE FROM WDM WHERE term = (SELECT id FROM Term WHERE word = ?)";
         try {
-            executeUpdate(query, s);
+            executeInTransaction(() -> {
+                executeUpdate(query, s);
+                // Il numero di parole viene ricalcolato prima di eliminare le righe, che individuano i documenti interessati
+                executeUpdate(wordCountQuery, s, s);
+                executeUpdate(wdmQuery, s);
+                return null;
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error trying to insert stop word: " + s, e);
             throw new QueryFailedException(e.getMessage());
@@ -84,7 +101,11 @@ public class JDBCStopWordDAO extends JdbcDAO<String> implements StopWordDAO {
     }
 
     /**
-     * Elimina una stopword specifica dal database.
+     * Elimina una stopword specifica dal database e ripristina il termine nelle WDM dei documenti che lo contengono.
+     * <p>
+     * Le occorrenze vengono lette dalla tabella {@code DocumentTerm} e il numero di parole dei documenti interessati
+     * viene ricalcolato come somma delle frequenze della loro WDM; i documenti privi di conteggi non filtrati
+     * non vengono modificati e vanno ricalcolati dal loro contenuto.
      *
      * @param s la stopword da eliminare
      * @throws QueryFailedException se si verifica un errore durante la cancellazione
@@ -92,8 +113,20 @@ public class JDBCStopWordDAO extends JdbcDAO<String> implements StopWordDAO {
     @Override
     public void delete(String s) {
         String query = "DELETE FROM StopWord WHERE word = ?";
+        String wordCountQuery = """
+                UPDATE Document SET word_count = (SELECT COALESCE(SUM(w.occurrences), 0) FROM WDM w WHERE w.document = Document.id)
+                WHERE id IN (SELECT r.document FROM DocumentTerm r JOIN Term t ON t.id = r.term WHERE t.word = ?)""";
+        String wdmQuery = """
+                INSERT OR IGNORE INTO WDM (document, term, occurrences)
+                SELECT r.document, r.term, r.occurrences FROM DocumentTerm r JOIN Term t ON t.id = r.term WHERE t.word = ?""";
         try {
-            executeUpdate(query, s);
+            executeInTransaction(() -> {
+                executeUpdate(query, s);
+                // Le righe vengono ripristinate prima di ricalcolare il numero di parole
+                executeUpdate(wdmQuery, s);
+                executeUpdate(wordCountQuery, s);
+                return null;
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error trying to delete stop word: " + s, e);
             throw new QueryFailedException(e.getMessage());
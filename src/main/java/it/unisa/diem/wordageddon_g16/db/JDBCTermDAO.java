@@ -0,0 +1,148 @@
+package it.unisa.diem.wordageddon_g16.db;
+
+import it.unisa.diem.wordageddon_g16.db.contracts.TermDAO;
+import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
+import it.unisa.diem.wordageddon_g16.db.exceptions.UpdateFailedException;
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+import javafx.util.Callback;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementazione JDBC del {@link TermDAO}, che gestisce il dizionario dei termini.
+ * <p>
+ * I termini sono salvati nella tabella {@code Term} e mantenuti in memoria nel {@link TermDictionary} condiviso.
+ * Gli id vengono assegnati dal dizionario; il DAO si limita a caricarli all'avvio e a salvare quelli nuovi
+ * prima che vengano referenziati dalla tabella {@code WDM}.
+ * Tutte le interazioni con il database sono gestite tramite {@link JdbcDAO}, con logging automatico via {@link SystemLogger}.
+ */
+public class JDBCTermDAO extends JdbcDAO<String> implements TermDAO {
+
+    /**
+     * Dizionario in memoria sincronizzato con la tabella {@code Term}.
+     */
+    private final TermDictionary dictionary;
+
+    /**
+     * Costruisce un nuovo {@code JDBCTermDAO} utilizzando il pool di connessioni e il dizionario specificati.
+     *
+     * @param pool       il pool di connessioni al database da utilizzare per le operazioni
+     * @param dictionary il dizionario dei termini da mantenere sincronizzato
+     */
+    public JDBCTermDAO(ConnectionPool pool, TermDictionary dictionary) {
+        super(pool);
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Recupera tutte le parole presenti nella tabella {@code Term}, ordinate per id.
+     *
+     * @return lista delle parole registrate
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<String> selectAll() {
+        String query = "SELECT word FROM Term ORDER BY id";
+        Callback<ResultSet, List<String>> callback = res -> {
+            try {
+                var result = new ArrayList<String>();
+                while (res.next()) {
+                    result.add(res.getString("word"));
+                }
+                return result;
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get all terms", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+        };
+        return executeQuery(query, callback);
+    }
+
+    /**
+     * Carica nel dizionario tutti i termini della tabella {@code Term}.
+     *
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public void loadDictionary() {
+        String query = "SELECT id, word FROM Term";
+        Callback<ResultSet, Void> callback = res -> {
+            try {
+                while (res.next()) {
+                    dictionary.register(res.getInt("id"), res.getString("word"));
+                }
+                return null;
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to load the term dictionary", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+        };
+        executeQuery(query, callback);
+    }
+
+    /**
+     * Salva i termini registrati nel dizionario dopo l'ultimo salvataggio.
+     * <p>
+     * I termini vengono inseriti a blocchi in un'unica transazione; l'inserimento usa {@code INSERT OR IGNORE},
+     * per cui è sicuro anche se più thread salvano gli stessi termini.
+     *
+     * @throws UpdateFailedException se si verifica un errore durante l'inserimento
+     */
+    @Override
+    public void persistNewTerms() {
+        String query = "INSERT OR IGNORE INTO Term (id, word) VALUES (?, ?)";
+        int from = dictionary.getPersistedCount();
+        int to = dictionary.getNextId();
+        if (from >= to) {
+            return;
+        }
+        try {
+            executeInTransaction(() -> executeBatch(query, to - from, (stm, row) -> {
+                stm.setInt(1, from + row);
+                stm.setString(2, dictionary.wordOf(from + row));
+            }));
+            dictionary.markPersisted(to);
+        } catch (SQLException e) {
+            SystemLogger.log("Error trying to persist new terms", e);
+            throw new UpdateFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Registra una parola nel dizionario, se assente, e la salva nel database.
+     *
+     * @param word la parola da inserire
+     * @throws UpdateFailedException se si verifica un errore durante l'inserimento
+     */
+    @Override
+    public void insert(String word) {
+        dictionary.idOf(word);
+        persistNewTerms();
+    }
+
+    /**
+     * Operazione non supportata: i termini sono condivisi tra tutte le WDM e non vengono modificati.
+     *
+     * @param word il termine da aggiornare (non utilizzato)
+     * @throws UnsupportedOperationException sempre sollevata, perché l'operazione è disabilitata
+     */
+    @Override
+    public void update(String word) {
+        throw new UnsupportedOperationException("This operation is not implemented as it cannot be used in this context.");
+    }
+
+    /**
+     * Operazione non supportata: i termini sono condivisi tra tutte le WDM e non vengono eliminati.
+     *
+     * @param word il termine da eliminare (non utilizzato)
+     * @throws UnsupportedOperationException sempre sollevata, perché l'operazione è disabilitata
+     */
+    @Override
+    public void delete(String word) {
+        throw new UnsupportedOperationException("This operation is not implemented as it cannot be used in this context.");
+    }
+}
@@ -0,0 +1,215 @@
+package it.unisa.diem.wordageddon_g16.db;
+
+import it.unisa.diem.wordageddon_g16.db.contracts.TermHistogramDAO;
+import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
+import it.unisa.diem.wordageddon_g16.db.exceptions.UpdateFailedException;
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.TermHistogram;
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
+import javafx.util.Callback;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Implementazione JDBC del {@link TermHistogramDAO}, che gestisce gli istogrammi completi dei termini dei documenti.
+ * <p>
+ * Le frequenze di tutti i termini, stopword comprese, sono salvate nella tabella {@code DocumentTerm}, mentre il numero
+ * totale di token è salvato nella colonna {@code token_count} della tabella {@code Document}: un documento ha un
+ * istogramma salvato se e solo se {@code token_count} non è {@code NULL}.
+ * Tutte le interazioni con il database sono gestite tramite {@link JdbcDAO}, con logging automatico via {@link SystemLogger}.
+ */
+public class JDBCTermHistogramDAO extends JdbcDAO<TermHistogram> implements TermHistogramDAO {
+
+    /**
+     * Query di base delle letture: ogni riga dell'istogramma è accompagnata dai dati del relativo documento.
+     */
+    private static final String SELECT_WITH_DOCUMENT = """
+            SELECT r.document, r.term, r.occurrences, d.title, d.word_count, d.token_count
+            FROM DocumentTerm r JOIN Document d ON d.id = r.document
+            WHERE d.token_count IS NOT NULL""";
+
+    /**
+     * Costruisce un nuovo {@code JDBCTermHistogramDAO} utilizzando il pool di connessioni specificato.
+     *
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
+     */
+    public JDBCTermHistogramDAO(ConnectionPool pool) {
+        super(pool);
+    }
+
+    /**
+     * Recupera l'istogramma salvato per un documento.
+     *
+     * @param document il documento di cui recuperare l'istogramma
+     * @return un {@code Optional} contenente l'istogramma, oppure vuoto se non è stato salvato
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public Optional<TermHistogram> selectBy(Document document) {
+        return selectBase(SELECT_WITH_DOCUMENT + " AND r.document = ?", document.filename()).stream().findFirst();
+    }
+
+    /**
+     * Recupera tutti gli istogrammi salvati.
+     *
+     * @return lista degli istogrammi
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<TermHistogram> selectAll() {
+        return selectBase(SELECT_WITH_DOCUMENT);
+    }
+
+    /**
+     * Recupera i documenti con {@code token_count} non valorizzato.
+     *
+     * @return i documenti senza istogramma
+     * @throws QueryFailedException se si verifica un errore durante la query
+     */
+    @Override
+    public List<Document> selectDocumentsWithoutHistogram() {
+        String query = "SELECT * FROM Document WHERE token_count IS NULL";
+        Callback<ResultSet, List<Document>> callback = res -> {
+            try {
+                var result = new ArrayList<Document>();
+                while (res.next()) {
+                    result.add(new Document(res.getString("id"), res.getString("title"), res.getInt("word_count")));
+                }
+                return result;
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get documents without histogram", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+        };
+        return executeQuery(query, callback);
+    }
+
+    /**
+     * Metodo interno di utilità per eseguire una query e convertire i risultati in oggetti {@link TermHistogram}.
+     *
+     * @param query la query SQL da eseguire
+     * @param params i parametri da sostituire nella query
+     * @return una lista di istogrammi, uno per documento
+     * @throws QueryFailedException se si verifica un errore durante l'elaborazione
+     */
+    private List<TermHistogram> selectBase(String query, Object... params) {
+        Callback<ResultSet, List<TermHistogram>> callback = res -> {
+            try {
+                Map<String, TermHistogram> histograms = new LinkedHashMap<>();
+                while (res.next()) {
+                    String filename = res.getString("document");
+                    TermHistogram histogram = histograms.get(filename);
+                    if (histogram == null) {
+                        Document document = new Document(filename, res.getString("title"), res.getInt("word_count"));
+                        histogram = new TermHistogram(document, new TermFrequencyMap(), res.getInt("token_count"));
+                        histograms.put(filename, histogram);
+                    }
+                    histogram.frequencies().put(res.getInt("term"), res.getInt("occurrences"));
+                }
+                return List.copyOf(histograms.values());
+            } catch (SQLException e) {
+                SystemLogger.log("Error trying to get term histograms", e);
+                throw new QueryFailedException(e.getMessage());
+            }
+        };
+        return executeQuery(query, callback, params);
+    }
+
+    /**
+     * Salva l'istogramma di un documento. L'istogramma viene calcolato una sola volta per documento:
+     * se ne è già salvato uno, l'operazione viene ignorata.
+     * <p>
+     * Se invocato all'interno di una transazione già aperta sulla connessione, ne entra a far parte.
+     *
+     * @param histogram l'istogramma da salvare
+     * @throws UpdateFailedException se si verifica un errore durante l'inserimento
+     */
+    @Override
+    public void insert(TermHistogram histogram) {
+        String query = "SELECT token_count FROM Document WHERE id = ?";
+        String filename = histogram.document().filename();
+        try {
+            executeInTransaction(() -> {
+                boolean stored = executeQuery(query, res -> {
+                    try {
+                        return res.next() && res.getObject("token_count") != null;
+                    } catch (SQLException e) {
+                        throw new QueryFailedException(e.getMessage());
+                    }
+                }, filename);
+                if (!stored) {
+                    write(histogram);
+                }
+                return null;
+            });
+        } catch (SQLException | QueryFailedException e) {
+            SystemLogger.log("Error trying to insert term histogram: " + filename, e);
+            throw new UpdateFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sostituisce l'istogramma salvato per un documento.
+     *
+     * @param histogram l'istogramma aggiornato
+     * @throws UpdateFailedException se si verifica un errore durante l'aggiornamento
+     */
+    @Override
+    public void update(TermHistogram histogram) {
+        try {
+            executeInTransaction(() -> {
+                write(histogram);
+                return null;
+            });
+        } catch (SQLException e) {
+            SystemLogger.log("Error trying to update term histogram: " + histogram.document().filename(), e);
+            throw new UpdateFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Elimina l'istogramma di un documento; il documento e la sua WDM non vengono modificati.
+     *
+     * @param histogram l'istogramma da eliminare
+     * @throws UpdateFailedException se si verifica un errore durante la cancellazione
+     */
+    @Override
+    public void delete(TermHistogram histogram) {
+        String filename = histogram.document().filename();
+        try {
+            executeInTransaction(() -> {
+                executeUpdate("DELETE FROM DocumentTerm WHERE document = ?", filename);
+                executeUpdate("UPDATE Document SET token_count = NULL WHERE id = ?", filename);
+                return null;
+            });
+        } catch (SQLException e) {
+            SystemLogger.log("Error trying to delete term histogram: " + filename, e);
+            throw new UpdateFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Scrive le righe e il numero di token di un istogramma, sostituendo quelli presenti, senza gestire la transazione.
+     *
+     * @param histogram l'istogramma da scrivere
+     * @throws SQLException se la scrittura fallisce
+     */
+    private void write(TermHistogram histogram) throws SQLException {
+        String filename = histogram.document().filename();
+        TermFrequencyMap frequencies = histogram.frequencies();
+        executeUpdate("DELETE FROM DocumentTerm WHERE document = ?", filename);
+        executeBatch("INSERT INTO DocumentTerm (document, term, occurrences) VALUES (?, ?, ?)", frequencies.size(), (stm, row) -> {
+            stm.setString(1, filename);
+            stm.setInt(2, frequencies.termAt(row));
+            stm.setInt(3, frequencies.countAt(row));
+        });
+        executeUpdate("UPDATE Document SET token_count = ? WHERE id = ?", histogram.tokenCount(), filename);
+    }
+}
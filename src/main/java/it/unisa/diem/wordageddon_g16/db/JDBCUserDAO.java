@@ -8,7 +8,6 @@ import it.unisa.diem.wordageddon_g16.models.User;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
 import javafx.util.Callback;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -24,12 +23,12 @@ import java.util.Optional;
 public class JDBCUserDAO extends JdbcDAO<User> implements UserDAO {
 
     /**
-     * Costruisce un nuovo {@code JDBCUserDAO} utilizzando la connessione specificata.
+     * Costruisce un nuovo {@code JDBCUserDAO} utilizzando il pool di connessioni specificato.
      *
-     * @param connection la connessione al database da utilizzare per le operazioni
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
      */
-    public JDBCUserDAO(Connection connection) {
-        super(connection);
+    public JDBCUserDAO(ConnectionPool pool) {
+        super(pool);
     }
 
     /**
@@ -154,9 +153,13 @@ public class JDBCUserDAO extends JdbcDAO<User> implements UserDAO {
      */
     public boolean isEmpty() {
         String query = "SELECT 1 FROM User LIMIT 1";
-        try (var stm = connection.createStatement();
-             var res = stm.executeQuery(query)) {
-            return !res.next();
+        try {
+            return pool.read(statements -> {
+                try (var stm = statements.getConnection().createStatement();
+                     var res = stm.executeQuery(query)) {
+                    return !res.next();
+                }
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error checking if User table is empty", e);
             return false;
@@ -1,15 +1,23 @@
 package it.unisa.diem.wordageddon_g16.db;
 
 import it.unisa.diem.wordageddon_g16.db.contracts.DocumentDAO;
+import it.unisa.diem.wordageddon_g16.db.contracts.TermDAO;
+import it.unisa.diem.wordageddon_g16.db.contracts.TermHistogramDAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.WdmDAO;
 import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
 import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.TermHistogram;
 import it.unisa.diem.wordageddon_g16.models.WDM;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
 import javafx.util.Callback;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -17,26 +25,47 @@ import java.util.Optional;
 /**
  * Implementazione JDBC del {@link WdmDAO}, che gestisce le operazioni sulla matrice parola-documento (WDM).
  * <p>
- * Le informazioni sono salvate nella tabella {@code WDM}, dove ogni riga rappresenta una parola contenuta in un documento
- * e la sua frequenza (numero di occorrenze). Il DAO collega ciascuna entry al relativo {@link Document}.
+ * Le informazioni sono salvate nella tabella {@code WDM}, dove ogni riga rappresenta un termine contenuto in un documento,
+ * identificato dal suo id nella tabella {@code Term}, e la sua frequenza (numero di occorrenze).
+ * Il DAO collega ciascuna entry al relativo {@link Document}, letto tramite JOIN con la tabella {@code Document}.
  */
 public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
 
     /**
-     * DAO utilizzato per recuperare i documenti associati alle istanze di WDM.
+     * Query di base delle letture: ogni riga della WDM è accompagnata dai dati del relativo documento,
+     * così da non dover interrogare la tabella {@code Document} per ogni riga.
+     */
+    private static final String SELECT_WITH_DOCUMENT =
+            "SELECT w.document, w.term, w.occurrences, d.title, d.word_count FROM WDM w JOIN Document d ON d.id = w.document";
+
+    /**
+     * DAO utilizzato per salvare il documento nella stessa transazione della sua WDM.
      */
     private final DocumentDAO documentDAO;
 
+    /**
+     * DAO utilizzato per salvare i nuovi termini prima delle righe che li referenziano.
+     */
+    private final TermDAO termDAO;
+
+    /**
+     * DAO utilizzato per salvare gli istogrammi da cui sono derivate le WDM.
+     */
+    private final TermHistogramDAO histogramDAO;
 
     /**
-     * Costruisce un nuovo {@code JDBCWdmDAO} utilizzando la connessione e il DAO dei documenti specificati.
+     * Costruisce un nuovo {@code JDBCWdmDAO} utilizzando il pool di connessioni e i DAO specificati.
      *
-     * @param conn la connessione al database da utilizzare per le operazioni
+     * @param pool il pool di connessioni al database da utilizzare per le operazioni
      * @param documentDAO il DAO per la gestione dei documenti
+     * @param termDAO il DAO per la gestione del dizionario dei termini
+     * @param histogramDAO il DAO per la gestione degli istogrammi dei termini
      */
-    public JDBCWdmDAO(Connection conn, DocumentDAO documentDAO) {
-        super(conn);
+    public JDBCWdmDAO(ConnectionPool pool, DocumentDAO documentDAO, TermDAO termDAO, TermHistogramDAO histogramDAO) {
+        super(pool);
         this.documentDAO = documentDAO;
+        this.termDAO = termDAO;
+        this.histogramDAO = histogramDAO;
     }
 
     /**
@@ -50,6 +79,35 @@ public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
         return selectWhere("document = ?", (document).filename()).stream().findFirst();
     }
 
+    /**
+     * Recupera le istanze di {@link WDM} di più documenti con un'unica query.
+     *
+     * @param documents i documenti di cui recuperare la mappa parola-frequenza
+     * @return lista delle WDM trovate, nell'ordine in cui compaiono i documenti
+     */
+    @Override
+    public List<WDM> selectBy(Collection<Document> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        Object[] filenames = documents.stream().map(Document::filename).distinct().toArray();
+        String placeholders = String.join(", ", Collections.nCopies(filenames.length, "?"));
+        List<WDM> found = selectWhere("document IN (" + placeholders + ")", filenames);
+
+        Map<String, WDM> byFilename = new HashMap<>();
+        for (WDM wdm : found) {
+            byFilename.put(wdm.getDocument().filename(), wdm);
+        }
+        var result = new ArrayList<WDM>(found.size());
+        for (Object filename : filenames) {
+            WDM wdm = byFilename.get((String) filename);
+            if (wdm != null) {
+                result.add(wdm);
+            }
+        }
+        return result;
+    }
+
 
     /**
      * Recupera tutte le istanze della matrice WDM presenti nel database.
@@ -60,18 +118,20 @@ public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
      */
     @Override
     public List<WDM> selectAll() {
-        return selectBase("SELECT * FROM WDM");
+        return selectBase(SELECT_WITH_DOCUMENT);
     }
 
     /**
      * Recupera le istanze di WDM che soddisfano una specifica clausola SQL.
+     * <p>
+     * La clausola può fare riferimento alle colonne di {@code WDM} e, tramite l'alias {@code d}, a quelle di {@code Document}.
      *
      * @param sqlClause la clausola WHERE da applicare (senza includere la parola chiave {@code WHERE})
      * @param params i parametri da sostituire nella query
      * @return una lista di WDM corrispondenti ai criteri forniti
      */
     public List<WDM> selectWhere(String sqlClause, Object... params) {
-        String query = "SELECT * FROM WDM WHERE " + sqlClause;
+        String query = SELECT_WITH_DOCUMENT + " WHERE " + sqlClause;
         return selectBase(query, params);
     }
 
@@ -79,6 +139,7 @@ public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
      * Metodo interno di utilità per eseguire una query e convertire i risultati in oggetti {@link WDM}.
      * <p>
      * Costruisce dinamicamente le istanze WDM aggregando le parole e le frequenze associate a ciascun documento.
+     * I dati del documento sono letti dalle colonne della JOIN con {@code Document}, una sola volta per documento.
      *
      * @param query la query SQL da eseguire
      * @param params i parametri da sostituire nella query
@@ -91,14 +152,16 @@ public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
                 if (res == null) {
                     return List.of();
                 }
-                Map<String, WDM> wdmMap = new HashMap<>();
+                Map<String, WDM> wdmMap = new LinkedHashMap<>();
                 while (res.next()) {
                     String filename = res.getString("document");
-                    var document = documentDAO.selectBy(filename);
-                    if (document.isPresent()) {
-                        WDM wdm = wdmMap.computeIfAbsent(filename, k -> new WDM(document.get(), new HashMap<>()));
-                        wdm.getWords().put(res.getString("word"), res.getInt("occurrences"));
+                    WDM wdm = wdmMap.get(filename);
+                    if (wdm == null) {
+                        Document document = new Document(filename, res.getString("title"), res.getInt("word_count"));
+                        wdm = new WDM(document, new TermFrequencyMap());
+                        wdmMap.put(filename, wdm);
                     }
+                    wdm.getWordFrequencies().put(res.getInt("term"), res.getInt("occurrences"));
                 }
                 return List.copyOf(wdmMap.values());
             } catch (Exception e) {
@@ -127,34 +190,139 @@ public class JDBCWdmDAO extends JdbcDAO<WDM> implements WdmDAO {
     /**
      * Aggiorna le frequenze delle parole per un documento nella tabella WDM.
      * <p>
-     * Per ogni parola nella mappa associata al documento, aggiorna la relativa frequenza.
+     * Vengono modificate solo le righe che differiscono da quelle salvate, come in {@link #merge(WDM)}.
      *
      * @param wdm la matrice parola-documento contenente i nuovi valori
      * @throws QueryFailedException se si verifica un errore durante l'aggiornamento
      */
     @Override
     public void update(WDM wdm) {
-        delete(wdm); // Prima elimino le vecchie parole
-        insert(wdm); // Poi inserisco quelle nuove
+        merge(wdm);
+    }
+
+    /**
+     * Allinea la WDM salvata per un documento a quella fornita, modificando solo le righe che differiscono.
+     * <p>
+     * Le frequenze salvate vengono lette e confrontate con quelle nuove: i termini scomparsi vengono eliminati,
+     * mentre quelli nuovi o con una frequenza diversa vengono scritti con un {@code INSERT ... ON CONFLICT DO UPDATE}.
+     * Il documento associato viene inserito, o aggiornato se già presente, nella stessa transazione; allo stesso modo,
+     * se la WDM è stata derivata da un {@link TermHistogram} non ancora salvato, viene salvato anche l'istogramma.
+     * Lettura e scritture avvengono in un'unica transazione, per cui in caso di errore il documento e la WDM salvati
+     * restano quelli precedenti.
+     *
+     * @param wdm la matrice parola-documento con i valori aggiornati
+     * @return il numero di righe eliminate, inserite o aggiornate
+     * @throws QueryFailedException se si verifica un errore durante l'aggiornamento
+     */
+    @Override
+    public int merge(WDM wdm) {
+        String deleteQuery = "DELETE FROM WDM WHERE document = ? AND term = ?";
+        String upsertQuery = "INSERT INTO WDM (document, term, occurrences) VALUES (?, ?, ?) "
+                + "ON CONFLICT (document, term) DO UPDATE SET occurrences = excluded.occurrences";
+        Document document = wdm.getDocument();
+        String filename = document.filename();
+        TermFrequencyMap words = wdm.getWordFrequencies();
+        try {
+            termDAO.persistNewTerms();
+            return executeInTransaction(() -> {
+                // L'inserimento viene ignorato se il documento è già presente, nel qual caso l'update ne aggiorna i dati
+                documentDAO.insert(document);
+                documentDAO.update(document);
+                TermFrequencyMap stored = selectFrequencies(filename);
+
+                // Termini salvati che non compaiono più nella nuova WDM
+                int[] removed = new int[stored.size()];
+                int removedCount = 0;
+                for (int i = 0; i < stored.size(); i++) {
+                    if (!words.contains(stored.termAt(i))) {
+                        removed[removedCount++] = stored.termAt(i);
+                    }
+                }
+                // Posizioni dei termini nuovi o con frequenza diversa
+                int[] changed = new int[words.size()];
+                int changedCount = 0;
+                for (int i = 0; i < words.size(); i++) {
+                    int index = stored.indexOf(words.termAt(i));
+                    if (index < 0 || stored.countAt(index) != words.countAt(i)) {
+                        changed[changedCount++] = i;
+                    }
+                }
+
+                int rows = executeBatch(deleteQuery, removedCount, (stm, row) -> {
+                    stm.setString(1, filename);
+                    stm.setInt(2, removed[row]);
+                });
+                rows += executeBatch(upsertQuery, changedCount, (stm, row) -> {
+                    stm.setString(1, filename);
+                    stm.setInt(2, words.termAt(changed[row]));
+                    stm.setInt(3, words.countAt(changed[row]));
+                });
+                // L'istogramma viene salvato solo se il documento non ne ha già uno
+                wdm.getHistogram().ifPresent(histogramDAO::insert);
+                return rows;
+            });
+        } catch (Exception e) {
+            throw new QueryFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Legge le frequenze salvate per un documento, senza risolvere il documento associato.
+     *
+     * @param filename identificativo del documento
+     * @return la mappa id termine, frequenza salvata (vuota se il documento non ha una WDM)
+     */
+    private TermFrequencyMap selectFrequencies(String filename) {
+        String query = "SELECT term, occurrences FROM WDM WHERE document = ?";
+        Callback<ResultSet, TermFrequencyMap> callback = res -> {
+            try {
+                var frequencies = new TermFrequencyMap();
+                while (res.next()) {
+                    frequencies.put(res.getInt("term"), res.getInt("occurrences"));
+                }
+                return frequencies;
+            } catch (SQLException e) {
+                throw new QueryFailedException(e.getMessage());
+            }
+        };
+        return executeQuery(query, callback, filename);
     }
 
     /**
      * Inserisce una nuova matrice parola-documento nella tabella WDM.
      * <p>
-     * Per ogni parola nel documento, viene inserita una riga con il numero di occorrenze.
+     * I termini non ancora presenti nella tabella {@code Term} vengono salvati prima delle righe che li referenziano.
+     * Le righe del documento vengono poi inserite a blocchi in un'unica transazione, così che in caso di errore
+     * non resti nel database una WDM parziale.
      *
      * @param wdm la matrice parola-documento da inserire
      * @throws QueryFailedException se si verifica un errore durante l'inserimento
      */
     @Override
     public void insert(WDM wdm) {
-        String query = "INSERT INTO WDM (document, word, occurrences) VALUES (?, ?, ?)";
-        try{
-            for (Map.Entry<String, Integer> entry : wdm.getWords().entrySet()) {
-                executeUpdate(query, wdm.getDocument().filename(), entry.getKey(), entry.getValue());
-            }
+        try {
+            termDAO.persistNewTerms();
+            executeInTransaction(() -> insertRows(wdm));
         } catch (Exception e) {
             throw new QueryFailedException(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Inserisce le righe di una WDM con un unico statement, senza gestire la transazione.
+     *
+     * @param wdm la matrice parola-documento da inserire
+     * @return numero di righe inserite
+     * @throws SQLException se l'inserimento fallisce
+     */
+    private int insertRows(WDM wdm) throws SQLException {
+        String query = "INSERT INTO WDM (document, term, occurrences) VALUES (?, ?, ?)";
+        String filename = wdm.getDocument().filename();
+        TermFrequencyMap words = wdm.getWordFrequencies();
+        return executeBatch(query, words.size(), (stm, row) -> {
+            stm.setString(1, filename);
+            stm.setInt(2, words.termAt(row));
+            stm.setInt(3, words.countAt(row));
+        });
+    }
+}
@@ -2,13 +2,13 @@ package it.unisa.diem.wordageddon_g16.db;
 
 import it.unisa.diem.wordageddon_g16.db.contracts.DAO;
 import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
+import it.unisa.diem.wordageddon_g16.utility.Config;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
 import javafx.util.Callback;
 
-import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 /**
  * Classe astratta di supporto per la realizzazione di DAO (Data Access Object) basati su JDBC.
@@ -23,11 +23,16 @@ import java.sql.Statement;
  * <p>
  * Caratteristiche principali:
  * <ul>
- *   <li>Gestione automatica di {@code PreparedStatement} e {@code ResultSet} tramite try-with-resources.</li>
+ *   <li>Instradamento delle operazioni sul {@link ConnectionPool}: le query passano dalle connessioni di sola
+ *       lettura, aggiornamenti, inserimenti massivi e transazioni dall'unica connessione di scrittura.</li>
+ *   <li>Riutilizzo dei {@code PreparedStatement} delle query parametrizzate, degli aggiornamenti e degli inserimenti
+ *       massivi tramite la {@link StatementCache} di ciascuna connessione; chiusura dei {@code ResultSet}
+ *       tramite try-with-resources.</li>
  *   <li>Supporto a query parametrizzate e non, tramite metodi generici che sfruttano una {@link Callback}
  *       per l’elaborazione flessibile dei risultati dalla query SQL (ResultSet).</li>
  *   <li>Gestione centralizzata delle eccezioni e logging automatico in caso di errore.</li>
  *   <li>Metodi utility per operazioni semplici e frequenti (es. verifica se una tabella è vuota).</li>
+ *   <li>Esecuzione di inserimenti massivi a blocchi ({@code addBatch}/{@code executeBatch}) all'interno di transazioni.</li>
  * </ul>
  *
  * @param <T> tipo dell'entità gestita dal DAO concreto
@@ -35,17 +40,64 @@ import java.sql.Statement;
 public abstract class JdbcDAO<T> implements DAO<T> {
 
     /**
-     * Connessione persistente al database utilizzata dal DAO.
+     * Numero di righe inviate al database in un singolo {@code executeBatch}, configurabile tramite
+     * {@link Config.Props#DB_BATCH_SIZE}.
      */
-    protected final Connection connection;
+    private static final int BATCH_SIZE = readBatchSize();
 
     /**
-     * Costruisce un nuovo JdbcDAO utilizzando la connessione specificata.
+     * Operazione sul database eseguibile all'interno di una transazione.
      *
-     * @param connection la connessione al database
+     * @param <R> tipo del risultato dell'operazione
      */
-    protected JdbcDAO(Connection connection) {
-        this.connection = connection;
+    @FunctionalInterface
+    protected interface SqlAction<R> {
+        /**
+         * Esegue l'operazione.
+         *
+         * @return risultato dell'operazione
+         * @throws SQLException se l'operazione fallisce
+         */
+        R run() throws SQLException;
+    }
+
+    /**
+     * Imposta i parametri di una riga di un inserimento massivo.
+     */
+    @FunctionalInterface
+    protected interface RowBinder {
+        /**
+         * Imposta sullo statement i parametri della riga indicata.
+         *
+         * @param stm statement su cui impostare i parametri
+         * @param row indice della riga, compreso tra 0 e il numero di righe escluso
+         * @throws SQLException se l'impostazione di un parametro fallisce
+         */
+        void bind(PreparedStatement stm, int row) throws SQLException;
+    }
+
+    /**
+     * Operazione su uno statement ottenuto dalla {@link StatementCache}.
+     *
+     * @param <R> tipo del risultato dell'operazione
+     */
+    @FunctionalInterface
+    private interface StatementAction<R> {
+        R run(PreparedStatement stm) throws SQLException;
+    }
+
+    /**
+     * Pool delle connessioni al database, condiviso tra i DAO.
+     */
+    protected final ConnectionPool pool;
+
+    /**
+     * Costruisce un nuovo JdbcDAO utilizzando il pool di connessioni specificato.
+     *
+     * @param pool il pool di connessioni al database
+     */
+    protected JdbcDAO(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     /**
@@ -60,11 +112,13 @@ public abstract class JdbcDAO<T> implements DAO<T> {
      */
     protected <R> R executeQuery(String sql, Callback<ResultSet, R> cb, Object... params) {
         // Callback consente di passare un metodo come parametro per elaborare il ResultSet
-        try (var stm = connection.prepareStatement(sql)) {
-            if (params.length > 0)
-                for (int i = 0; i < params.length; i++)
-                    stm.setObject(i + 1, params[i]);
-            return cb.call(stm.executeQuery());
+        try {
+            return pool.read(statements -> withStatement(statements, sql, false, stm -> {
+                bind(stm, params);
+                try (var res = stm.executeQuery()) {
+                    return cb.call(res);
+                }
+            }));
         } catch (SQLException e) {
             SystemLogger.log("Error trying to execute query: " + sql, e);
             throw new QueryFailedException(e.getMessage());
@@ -81,8 +135,12 @@ public abstract class JdbcDAO<T> implements DAO<T> {
      * @throws QueryFailedException se la query fallisce
      */
     protected <R> R executeQuery(String sql, Callback<ResultSet, R> cb) {
-        try (var stm = connection.createStatement()) {
-            return cb.call(stm.executeQuery(sql));
+        try {
+            return pool.read(statements -> {
+                try (var stm = statements.getConnection().createStatement()) {
+                    return cb.call(stm.executeQuery(sql));
+                }
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error trying to execute query: " + sql, e);
             throw new QueryFailedException(e.getMessage());
@@ -100,12 +158,121 @@ public abstract class JdbcDAO<T> implements DAO<T> {
      * @throws SQLException se l'esecuzione fallisce
      */
     protected long executeUpdate(String sql, Object... params) throws SQLException {
-        try (var stm = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            if (params.length > 0)
-                for (int i = 0; i < params.length; i++)
-                    stm.setObject(i + 1, params[i]);
+        return pool.write(statements -> withStatement(statements, sql, true, stm -> {
+            bind(stm, params);
             stm.executeUpdate();
-            return stm.getGeneratedKeys().next() ? stm.getGeneratedKeys().getLong(1) : -1;
+            try (var keys = stm.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : -1L;
+            }
+        }));
+    }
+
+    /**
+     * Esegue un'operazione all'interno di una transazione.
+     * <p>
+     * Se l'operazione termina correttamente viene eseguito il commit, altrimenti tutte le modifiche vengono
+     * annullate e l'eccezione viene propagata. Se sulla connessione è già aperta una transazione, l'operazione
+     * ne entra a far parte e il commit è lasciato alla transazione esterna.
+     * La transazione occupa la connessione di scrittura del {@link ConnectionPool} fino al termine, così che thread
+     * diversi non mescolino le proprie transazioni; le letture degli altri thread non vengono bloccate.
+     *
+     * @param <R>    tipo del risultato dell'operazione
+     * @param action operazione da eseguire
+     * @return risultato dell'operazione
+     * @throws SQLException se l'operazione o il commit falliscono
+     */
+    protected <R> R executeInTransaction(SqlAction<R> action) throws SQLException {
+        return pool.write(statements -> {
+            var connection = statements.getConnection();
+            if (!connection.getAutoCommit()) {
+                return action.run();
+            }
+            connection.setAutoCommit(false);
+            try {
+                R result = action.run();
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Esegue la stessa istruzione SQL su più righe con un unico {@code PreparedStatement}.
+     * <p>
+     * Le righe vengono inviate al database a blocchi di {@link Config.Props#DB_BATCH_SIZE}. Il metodo non apre
+     * transazioni: per rendere l'operazione atomica va invocato all'interno di {@link #executeInTransaction(SqlAction)}.
+     *
+     * @param sql    istruzione SQL parametrizzata
+     * @param rows   numero di righe da elaborare
+     * @param binder imposta i parametri di ciascuna riga
+     * @return numero totale di righe modificate
+     * @throws SQLException se l'esecuzione fallisce
+     */
+    protected int executeBatch(String sql, int rows, RowBinder binder) throws SQLException {
+        return pool.write(statements -> withStatement(statements, sql, false, stm -> {
+            int updated = 0;
+            for (int i = 0; i < rows; i++) {
+                binder.bind(stm, i);
+                stm.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i == rows - 1) {
+                    for (int count : stm.executeBatch()) {
+                        if (count > 0) {
+                            updated += count;
+                        }
+                    }
+                }
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * Esegue un'operazione su uno statement della {@link StatementCache}, restituendolo alla cache al termine.
+     * Se l'operazione fallisce lo statement viene chiuso invece che riutilizzato.
+     *
+     * @param <R>           tipo del risultato dell'operazione
+     * @param statements    cache degli statement della connessione assegnata dal pool
+     * @param sql           istruzione SQL parametrizzata
+     * @param generatedKeys se lo statement deve restituire le chiavi generate
+     * @param action        operazione da eseguire sullo statement
+     * @return risultato dell'operazione
+     * @throws SQLException se la preparazione dello statement o l'operazione falliscono
+     */
+    private static <R> R withStatement(StatementCache statements, String sql, boolean generatedKeys,
+                                       StatementAction<R> action) throws SQLException {
+        var stm = statements.acquire(sql, generatedKeys);
+        boolean completed = false;
+        try {
+            R result = action.run(stm);
+            completed = true;
+            return result;
+        } finally {
+            statements.release(sql, generatedKeys, stm, completed);
+        }
+    }
+
+    private static void bind(PreparedStatement stm, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            stm.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Legge la dimensione dei blocchi di inserimento dalla configurazione, con un valore di default se assente o non valida.
+     *
+     * @return dimensione dei blocchi
+     */
+    private static int readBatchSize() {
+        try {
+            int size = Integer.parseInt(Config.get(Config.Props.DB_BATCH_SIZE).trim());
+            return size > 0 ? size : 500;
+        } catch (RuntimeException e) {
+            return 500;
         }
     }
 
@@ -117,9 +284,13 @@ public abstract class JdbcDAO<T> implements DAO<T> {
      */
     protected boolean isEmpty(String tableName) {
         String query = "SELECT 1 FROM " + tableName + " LIMIT 1";
-        try (var stm = connection.createStatement();
-             var res = stm.executeQuery(query)) {
-            return res.next();
+        try {
+            return pool.read(statements -> {
+                try (var stm = statements.getConnection().createStatement();
+                     var res = stm.executeQuery(query)) {
+                    return res.next();
+                }
+            });
         } catch (SQLException e) {
             SystemLogger.log("Error checking if " + tableName + "has any rows", e);
             return false;
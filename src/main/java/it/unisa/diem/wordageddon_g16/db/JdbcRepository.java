@@ -2,11 +2,13 @@ package it.unisa.diem.wordageddon_g16.db;
 
 import it.unisa.diem.wordageddon_g16.db.contracts.DAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.Repository;
+import it.unisa.diem.wordageddon_g16.db.exceptions.QueryFailedException;
+import it.unisa.diem.wordageddon_g16.db.exceptions.UpdateFailedException;
 import it.unisa.diem.wordageddon_g16.utility.Config;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
@@ -14,15 +16,261 @@ import java.util.Map;
 /**
  * Implementazione della interfaccia {@link Repository} che gestisce l'accesso ai dati tramite JDBC.
  * <p>
- * Inizializza le DAO necessarie al funzionamento del sistema e mantiene una connessione persistente
- * al database definito in {@link Config.Props#DB_URL}. Abilita le chiavi esterne per SQLite.
+ * Inizializza le DAO necessarie al funzionamento del sistema e mantiene un {@link ConnectionPool} di connessioni
+ * persistenti al database definito in {@link Config.Props#DB_URL}. Abilita le chiavi esterne per SQLite e aggiorna
+ * lo schema all'ultima versione tramite le migrazioni in {@link #MIGRATIONS}.
  */
 public class JdbcRepository implements Repository {
+    /**
+     * Trigger che mantengono {@code UserStats} allineata ai report, ricreati quando la tabella {@code GameReport}
+     * viene ricostruita.
+     */
+    private static final String[] USER_STATS_TRIGGERS = {
+            """
+            CREATE TRIGGER user_stats_after_insert
+                AFTER INSERT ON GameReport
+                FOR EACH ROW
+            BEGIN
+                INSERT INTO UserStats (user, difficulty, games, total_score, max_score)
+                VALUES (NEW.user, NEW.difficulty, 1, NEW.score, NEW.score)
+                ON CONFLICT (user, difficulty) DO UPDATE SET
+                    games = games + 1,
+                    total_score = total_score + excluded.total_score,
+                    max_score = MAX(max_score, excluded.max_score);
+            END""",
+            """
+            CREATE TRIGGER user_stats_after_delete
+                AFTER DELETE ON GameReport
+                FOR EACH ROW
+            BEGIN
+                DELETE FROM UserStats WHERE user = OLD.user AND difficulty = OLD.difficulty AND games = 1;
+                UPDATE UserStats SET
+                    games = games - 1,
+                    total_score = total_score - OLD.score,
+                    max_score = CASE WHEN OLD.score < max_score THEN max_score ELSE
+                        (SELECT MAX(score) FROM GameReport WHERE user = OLD.user AND difficulty = OLD.difficulty) END
+                WHERE user = OLD.user AND difficulty = OLD.difficulty;
+            END""",
+            """
+            CREATE TRIGGER user_stats_after_update
+                AFTER UPDATE OF user, difficulty, score ON GameReport
+                FOR EACH ROW
+            BEGIN
+                DELETE FROM UserStats WHERE user = OLD.user AND difficulty = OLD.difficulty AND games = 1;
+                UPDATE UserStats SET
+                    games = games - 1,
+                    total_score = total_score - OLD.score,
+                    max_score = CASE WHEN OLD.score < max_score THEN max_score ELSE
+                        (SELECT MAX(score) FROM GameReport WHERE user = OLD.user AND difficulty = OLD.difficulty
+                         AND id <> NEW.id) END
+                WHERE user = OLD.user AND difficulty = OLD.difficulty;
+                INSERT INTO UserStats (user, difficulty, games, total_score, max_score)
+                VALUES (NEW.user, NEW.difficulty, 1, NEW.score, NEW.score)
+                ON CONFLICT (user, difficulty) DO UPDATE SET
+                    games = games + 1,
+                    total_score = total_score + excluded.total_score,
+                    max_score = MAX(max_score, excluded.max_score);
+            END"""
+    };
+
+    /**
+     * Migrazioni dello schema, in ordine di versione: la migrazione in posizione {@code i} porta lo schema
+     * dalla versione {@code i} alla versione {@code i + 1}, registrata in {@code PRAGMA user_version}.
+     */
+    private static final String[][] MIGRATIONS = {
+            // 1: dizionario dei termini, la tabella WDM referenzia i termini per id
+            {
+                    """
+                    CREATE TABLE Term(
+                        id INTEGER PRIMARY KEY,
+                        word TEXT NOT NULL UNIQUE CHECK (LENGTH(word) > 0)
+                    )""",
+                    "INSERT INTO Term (id, word) SELECT ROW_NUMBER() OVER (ORDER BY word) - 1, word FROM (SELECT DISTINCT word FROM WDM)",
+                    """
+                    CREATE TABLE WDM_migration(
+                        document TEXT NOT NULL REFERENCES Document(id) ON DELETE CASCADE,
+                        term INTEGER NOT NULL REFERENCES Term(id),
+                        occurrences INTEGER NOT NULL CHECK (occurrences >= 0),
+                        PRIMARY KEY (document, term)
+                    ) WITHOUT ROWID""",
+                    "INSERT INTO WDM_migration (document, term, occurrences) SELECT w.document, t.id, w.occurrences FROM WDM w JOIN Term t ON t.word = w.word",
+                    "DROP TABLE WDM",
+                    "ALTER TABLE WDM_migration RENAME TO WDM"
+            },
+            // 2: conteggi dei termini prima del filtro delle stopword, per aggiornare le WDM senza rileggere i file
+            {
+                    """
+                    CREATE TABLE DocumentTerm(
+                        document TEXT NOT NULL REFERENCES Document(id) ON DELETE CASCADE,
+                        term INTEGER NOT NULL REFERENCES Term(id),
+                        occurrences INTEGER NOT NULL CHECK (occurrences > 0),
+                        PRIMARY KEY (document, term)
+                    ) WITHOUT ROWID""",
+                    "CREATE INDEX DocumentTerm_term ON DocumentTerm(term)",
+                    "CREATE INDEX WDM_term ON WDM(term)"
+            },
+            // 3: numero totale di token del documento, valorizzato quando ne viene salvato l'istogramma
+            {
+                    "ALTER TABLE Document ADD COLUMN token_count INTEGER CHECK (token_count >= 0)",
+                    """
+                    UPDATE Document SET token_count = (SELECT SUM(occurrences) FROM DocumentTerm r WHERE r.document = Document.id)
+                    WHERE id IN (SELECT document FROM DocumentTerm)"""
+            },
+            // 4: documenti di un report letti in join a partire dal report
+            {
+                    "CREATE INDEX Content_report ON Content(report)"
+            },
+            // 5: statistiche per utente e difficoltà, mantenute dai trigger sui report
+            {
+                    """
+                    CREATE TABLE UserStats(
+                        user TEXT NOT NULL REFERENCES User(name) ON DELETE CASCADE,
+                        difficulty TEXT NOT NULL CHECK (difficulty IN ('EASY', 'MEDIUM', 'HARD')),
+                        games INTEGER NOT NULL CHECK (games > 0),
+                        total_score INTEGER NOT NULL,
+                        max_score INTEGER NOT NULL,
+                        PRIMARY KEY (user, difficulty)
+                    ) WITHOUT ROWID""",
+                    """
+                    INSERT INTO UserStats (user, difficulty, games, total_score, max_score)
+                    SELECT user, difficulty, COUNT(*), SUM(score), MAX(score) FROM GameReport
+                    WHERE user IN (SELECT name FROM User)
+                    GROUP BY user, difficulty""",
+                    USER_STATS_TRIGGERS[0],
+                    USER_STATS_TRIGGERS[1],
+                    USER_STATS_TRIGGERS[2]
+            },
+            // 6: totali per utente e indici di classifica sul punteggio medio, per le letture a pagine
+            {
+                    """
+                    CREATE TABLE UserTotals(
+                        user TEXT PRIMARY KEY REFERENCES User(name) ON DELETE CASCADE,
+                        games INTEGER NOT NULL CHECK (games > 0),
+                        total_score INTEGER NOT NULL,
+                        easy_games INTEGER NOT NULL,
+                        medium_games INTEGER NOT NULL,
+                        hard_games INTEGER NOT NULL
+                    ) WITHOUT ROWID""",
+                    """
+                    INSERT INTO UserTotals (user, games, total_score, easy_games, medium_games, hard_games)
+                    SELECT user, SUM(games), SUM(total_score),
+                           SUM(CASE difficulty WHEN 'EASY' THEN games ELSE 0 END),
+                           SUM(CASE difficulty WHEN 'MEDIUM' THEN games ELSE 0 END),
+                           SUM(CASE difficulty WHEN 'HARD' THEN games ELSE 0 END)
+                    FROM UserStats
+                    GROUP BY user""",
+                    "CREATE INDEX UserTotals_ranking ON UserTotals(total_score / games DESC, user)",
+                    "CREATE INDEX UserStats_ranking ON UserStats(difficulty, total_score / games DESC, user)",
+                    """
+                    CREATE TRIGGER user_totals_after_insert
+                        AFTER INSERT ON UserStats
+                        FOR EACH ROW
+                    BEGIN
+                        INSERT INTO UserTotals (user, games, total_score, easy_games, medium_games, hard_games)
+                        VALUES (NEW.user, NEW.games, NEW.total_score,
+                                CASE NEW.difficulty WHEN 'EASY' THEN NEW.games ELSE 0 END,
+                                CASE NEW.difficulty WHEN 'MEDIUM' THEN NEW.games ELSE 0 END,
+                                CASE NEW.difficulty WHEN 'HARD' THEN NEW.games ELSE 0 END)
+                        ON CONFLICT (user) DO UPDATE SET
+                            games = games + excluded.games,
+                            total_score = total_score + excluded.total_score,
+                            easy_games = easy_games + excluded.easy_games,
+                            medium_games = medium_games + excluded.medium_games,
+                            hard_games = hard_games + excluded.hard_games;
+                    END""",
+                    """
+                    CREATE TRIGGER user_totals_after_update
+                        AFTER UPDATE OF games, total_score ON UserStats
+                        FOR EACH ROW
+                    BEGIN
+                        UPDATE UserTotals SET
+                            games = games + NEW.games - OLD.games,
+                            total_score = total_score + NEW.total_score - OLD.total_score,
+                            easy_games = easy_games + CASE NEW.difficulty WHEN 'EASY' THEN NEW.games - OLD.games ELSE 0 END,
+                            medium_games = medium_games + CASE NEW.difficulty WHEN 'MEDIUM' THEN NEW.games - OLD.games ELSE 0 END,
+                            hard_games = hard_games + CASE NEW.difficulty WHEN 'HARD' THEN NEW.games - OLD.games ELSE 0 END
+                        WHERE user = NEW.user;
+                    END""",
+                    """
+                    CREATE TRIGGER user_totals_after_delete
+                        AFTER DELETE ON UserStats
+                        FOR EACH ROW
+                    BEGIN
+                        DELETE FROM UserTotals WHERE user = OLD.user AND games = OLD.games;
+                        UPDATE UserTotals SET
+                            games = games - OLD.games,
+                            total_score = total_score - OLD.total_score,
+                            easy_games = easy_games - CASE OLD.difficulty WHEN 'EASY' THEN OLD.games ELSE 0 END,
+                            medium_games = medium_games - CASE OLD.difficulty WHEN 'MEDIUM' THEN OLD.games ELSE 0 END,
+                            hard_games = hard_games - CASE OLD.difficulty WHEN 'HARD' THEN OLD.games ELSE 0 END
+                        WHERE user = OLD.user;
+                    END"""
+            },
+            // 7: report di un utente letti per timestamp, per lo storico del pannello utente
+            {
+                    "CREATE INDEX GameReport_user_timestamp ON GameReport(user, timestamp)"
+            },
+            // 8: timestamp in millisecondi dall'epoch e durate in millisecondi invece delle stringhe "MM:SS"
+            {
+                    """
+                    CREATE TABLE GameReport_migration(
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        user TEXT REFERENCES User(name) ON DELETE CASCADE NOT NULL,
+                        timestamp INTEGER NOT NULL,
+                        difficulty TEXT NOT NULL CHECK (difficulty IN ('EASY', 'MEDIUM', 'HARD')),
+                        max_time INTEGER NOT NULL CHECK (max_time >= 0),
+                        used_time INTEGER NOT NULL CHECK (used_time >= 0),
+                        question_count INTEGER NOT NULL CHECK (question_count > 0),
+                        score INTEGER NOT NULL CHECK (score >= 0)
+                    )""",
+                    """
+                    INSERT INTO GameReport_migration (id, user, timestamp, difficulty, max_time, used_time, question_count, score)
+                    SELECT id, user,
+                        CASE typeof(timestamp) WHEN 'integer' THEN timestamp
+                            ELSE CAST(strftime('%s', timestamp) AS INTEGER) * 1000 END,
+                        difficulty,
+                        (CAST(substr(max_time, 1, 2) AS INTEGER) * 60 + CAST(substr(max_time, 4, 2) AS INTEGER)) * 1000,
+                        (CAST(substr(used_time, 1, 2) AS INTEGER) * 60 + CAST(substr(used_time, 4, 2) AS INTEGER)) * 1000,
+                        question_count, score
+                    FROM GameReport WHERE user IN (SELECT name FROM User)""",
+                    // I report di utenti non più esistenti non erano raggiungibili e vengono scartati
+                    "DELETE FROM Content WHERE report NOT IN (SELECT id FROM GameReport_migration)",
+                    // Gli id dei report eliminati non vengono riassegnati
+                    """
+                    UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence WHERE name = 'GameReport')
+                    WHERE name = 'GameReport_migration'""",
+                    // Indice e trigger della vecchia tabella vengono eliminati insieme alla tabella
+                    "DROP TABLE GameReport",
+                    "ALTER TABLE GameReport_migration RENAME TO GameReport",
+                    "CREATE INDEX GameReport_user_timestamp ON GameReport(user, timestamp)",
+                    USER_STATS_TRIGGERS[0],
+                    USER_STATS_TRIGGERS[1],
+                    USER_STATS_TRIGGERS[2]
+            },
+            // 9: numero di parole pari a 0 ammesso per i documenti composti solo da stopword,
+            // e ricalcolato dalle WDM salvate per correggere eventuali valori non allineati
+            {
+                    """
+                    CREATE TABLE Document_migration(
+                        id TEXT PRIMARY KEY,
+                        title TEXT NOT NULL DEFAULT id,
+                        word_count INTEGER NOT NULL CHECK (word_count >= 0),
+                        token_count INTEGER CHECK (token_count >= 0)
+                    )""",
+                    """
+                    INSERT INTO Document_migration (id, title, word_count, token_count)
+                    SELECT id, title, (SELECT COALESCE(SUM(w.occurrences), 0) FROM WDM w WHERE w.document = Document.id), token_count
+                    FROM Document""",
+                    "DROP TABLE Document",
+                    "ALTER TABLE Document_migration RENAME TO Document"
+            }
+    };
+
     private final Map<String, JdbcDAO<?>> daos = new HashMap<>();
-    private Connection conn;
+    private ConnectionPool pool;
 
     /**
-     * Costruisce un {@code JdbcRepository} e stabilisce una connessione al database.
+     * Costruisce un {@code JdbcRepository} e apre il {@link ConnectionPool} del database.
      * <p>
      * Configura i DAO per le entità:
      * <ul>
@@ -30,30 +278,121 @@ public class JdbcRepository implements Repository {
      *   <li>{@code document} – {@link JDBCDocumentDAO}</li>
      *   <li>{@code stopWord} – {@link JDBCStopWordDAO}</li>
      *   <li>{@code gameReport} – {@link JDBCGameReportDAO}</li>
+     *   <li>{@code term} – {@link JDBCTermDAO}</li>
+     *   <li>{@code termHistogram} – {@link JDBCTermHistogramDAO}</li>
      *   <li>{@code wdm} – {@link JDBCWdmDAO}</li>
      * </ul>
-     * Abilita le foreign key con {@code PRAGMA foreign_keys = ON}.
+     * Il pool, in modalità {@code WAL} e con le foreign key abilitate, ha una connessione di scrittura e
+     * {@link Config.Props#DB_READ_CONNECTIONS} connessioni di sola lettura, ciascuna con una {@link StatementCache}
+     * di dimensione {@link Config.Props#DB_STATEMENT_CACHE_SIZE}. Applica le migrazioni mancanti sulla connessione
+     * di scrittura, ricalcola le statistiche dei report e carica il {@link TermDictionary} condiviso.
      * In caso di errore, registra l'evento tramite {@link SystemLogger}.
      */
     public JdbcRepository() {
         try {
-            conn = DriverManager.getConnection(Config.get(Config.Props.DB_URL));
-            // Abilita le foreign key per la connessione SQLite
-            try (var stmt = conn.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON;");
-            }
-            var userDAO = new JDBCUserDAO(conn);
-            var documentDAO = new JDBCDocumentDAO(conn);
+            pool = new ConnectionPool(Config.get(Config.Props.DB_URL),
+                    readSize(Config.Props.DB_READ_CONNECTIONS, 4),
+                    readSize(Config.Props.DB_STATEMENT_CACHE_SIZE, 64));
+            pool.write(statements -> {
+                migrate(statements.getConnection());
+                return null;
+            });
+            var userDAO = new JDBCUserDAO(pool);
+            var documentDAO = new JDBCDocumentDAO(pool);
+            var termDAO = new JDBCTermDAO(pool, TermDictionary.shared());
+            termDAO.loadDictionary();
             daos.put("user", userDAO);
             daos.put("document", documentDAO);
-            daos.put("stopWord", new JDBCStopWordDAO(conn));
-            daos.put("gameReport", new JDBCGameReportDAO(conn, documentDAO, userDAO));
-            daos.put("wdm", new JDBCWdmDAO(conn, documentDAO));
+            daos.put("stopWord", new JDBCStopWordDAO(pool));
+            var gameReportDAO = new JDBCGameReportDAO(pool);
+            rebuildStats(gameReportDAO);
+            daos.put("gameReport", gameReportDAO);
+            daos.put("term", termDAO);
+            var histogramDAO = new JDBCTermHistogramDAO(pool);
+            daos.put("termHistogram", histogramDAO);
+            daos.put("wdm", new JDBCWdmDAO(pool, documentDAO, termDAO, histogramDAO));
         } catch (SQLException e) {
             SystemLogger.log("Could not establish a connection to the database: ", e);
         }
     }
 
+    /**
+     * Ricalcola le statistiche aggregate dai report all'avvio, correggendo eventuali scostamenti dei trigger.
+     * <p>
+     * Un errore nel ricalcolo, già registrato dal DAO, non impedisce l'avvio: restano in uso le statistiche salvate.
+     *
+     * @param gameReportDAO il DAO dei report
+     */
+    private static void rebuildStats(JDBCGameReportDAO gameReportDAO) {
+        try {
+            gameReportDAO.rebuildStats();
+        } catch (QueryFailedException | UpdateFailedException ignored) {
+        }
+    }
+
+    /**
+     * Aggiorna lo schema del database applicando, in ordine, le migrazioni successive alla versione corrente.
+     * <p>
+     * Ogni migrazione viene eseguita in una transazione insieme all'aggiornamento di {@code PRAGMA user_version}:
+     * in caso di errore viene annullata per intero e l'eccezione viene propagata.
+     * <p>
+     * Le foreign key restano disabilitate durante le migrazioni, così che la ricostruzione di una tabella
+     * referenziata non elimini a cascata le righe che la referenziano; prima di confermare ciascuna migrazione
+     * viene verificato con {@code PRAGMA foreign_key_check} che non abbia introdotto riferimenti non validi.
+     *
+     * @param conn la connessione di scrittura
+     * @throws SQLException se una migrazione fallisce
+     */
+    private static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (var stmt = conn.createStatement(); var res = stmt.executeQuery("PRAGMA user_version")) {
+            version = res.next() ? res.getInt(1) : 0;
+        }
+        if (version >= MIGRATIONS.length) {
+            return;
+        }
+        try (var stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = OFF");
+        }
+        try {
+            int violations = countForeignKeyViolations(conn);
+            for (int i = version; i < MIGRATIONS.length; i++) {
+                conn.setAutoCommit(false);
+                try (var stmt = conn.createStatement()) {
+                    for (String sql : MIGRATIONS[i]) {
+                        stmt.execute(sql);
+                    }
+                    int after = countForeignKeyViolations(conn);
+                    if (after > violations) {
+                        throw new SQLException("Migration " + (i + 1) + " introduced " + (after - violations) + " invalid references");
+                    }
+                    violations = after;
+                    stmt.execute("PRAGMA user_version = " + (i + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        } finally {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA foreign_keys = ON");
+            }
+        }
+    }
+
+    private static int countForeignKeyViolations(Connection conn) throws SQLException {
+        int count = 0;
+        try (var stmt = conn.createStatement(); var res = stmt.executeQuery("PRAGMA foreign_key_check")) {
+            while (res.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Restituisce il DAO associato a una specifica categoria testuale.
      * <p>
@@ -77,17 +416,39 @@ public class JdbcRepository implements Repository {
     }
 
     /**
-     * Chiude la connessione aperta al database, se presente.
+     * Restituisce i contatori di utilizzo della cache degli statement.
+     *
+     * @return i contatori correnti, sommati su tutte le connessioni del pool,
+     *         tutti a zero se la connessione non è stata stabilita
+     */
+    public StatementCache.Stats getStatementCacheStats() {
+        return pool == null ? new StatementCache.Stats(0, 0, 0) : pool.getStatementCacheStats();
+    }
+
+    /**
+     * Legge un valore numerico dalla configurazione, con un valore di default se assente o non valido.
+     *
+     * @param key          la proprietà da leggere
+     * @param defaultValue il valore da usare se la proprietà è assente, non numerica o negativa
+     * @return il valore letto
+     */
+    private static int readSize(Config.Props key, int defaultValue) {
+        try {
+            int value = Integer.parseInt(Config.get(key).trim());
+            return value >= 0 ? value : defaultValue;
+        } catch (RuntimeException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Chiude le connessioni aperte al database, se presenti, dopo aver chiuso gli statement delle cache.
      * <p>
      * In caso di errore durante la chiusura, viene registrato tramite {@link SystemLogger}.
      */
     public void close(){
-        if (conn != null) {
-            try {
-                conn.close();
-            } catch (SQLException e) {
-                SystemLogger.log("Could not close the database connection: ", e);
-            }
+        if (pool != null) {
+            pool.close();
         }
     }
 }
\ No newline at end of file
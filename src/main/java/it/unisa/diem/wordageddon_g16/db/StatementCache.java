@@ -0,0 +1,175 @@
+package it.unisa.diem.wordageddon_g16.db;
+
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache dei {@link PreparedStatement} di una connessione, indicizzati per testo SQL.
+ * <p>
+ * I DAO ottengono uno statement con {@link #acquire(String, boolean)} e lo restituiscono con
+ * {@link #release(String, boolean, PreparedStatement, boolean)}: uno statement in uso viene tolto dalla cache,
+ * per cui thread diversi, o query annidate con lo stesso SQL, non lo condividono mai e ne preparano uno nuovo.
+ * Gli statement inutilizzati sono conservati fino a {@code capacity}; oltre questo limite viene chiuso quello
+ * usato meno di recente. Alla chiusura della cache vengono chiusi gli statement conservati e, man mano che
+ * vengono restituiti, quelli ancora in uso.
+ * </p>
+ * <p>
+ * Sono disponibili i contatori degli statement riutilizzati, di quelli preparati e di quelli chiusi per far spazio
+ * ad altri, tramite {@link #getStats()}.
+ * </p>
+ */
+public class StatementCache implements AutoCloseable {
+
+    /**
+     * Contatori di utilizzo della cache.
+     *
+     * @param hits      statement riutilizzati dalla cache
+     * @param misses    statement preparati perché assenti dalla cache o già in uso
+     * @param evictions statement chiusi perché la cache era piena
+     */
+    public record Stats(long hits, long misses, long evictions) {
+        /**
+         * Restituisce la frazione di richieste servite dalla cache.
+         *
+         * @return il rapporto tra riutilizzi e richieste, 0 se non ci sono state richieste
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * Chiave di uno statement: lo stesso SQL preparato con e senza la restituzione delle chiavi generate
+     * produce statement diversi.
+     */
+    private record Key(String sql, boolean generatedKeys) {
+    }
+
+    private final Connection connection;
+    private final int capacity;
+
+    /**
+     * Statement inutilizzati, in ordine di accesso.
+     */
+    private final Map<Key, PreparedStatement> idle;
+
+    private boolean closed;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Costruisce una cache vuota per la connessione indicata.
+     *
+     * @param connection la connessione su cui preparare gli statement
+     * @param capacity   numero massimo di statement inutilizzati conservati
+     */
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.idle = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                evictions++;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Restituisce la connessione su cui vengono preparati gli statement.
+     *
+     * @return la connessione
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Restituisce uno statement per l'SQL indicato, riutilizzandone uno inutilizzato se presente.
+     * Lo statement resta di uso esclusivo del chiamante fino a {@link #release(String, boolean, PreparedStatement, boolean)}.
+     *
+     * @param sql           istruzione SQL parametrizzata
+     * @param generatedKeys se lo statement deve restituire le chiavi generate
+     * @return lo statement
+     * @throws SQLException se la preparazione dello statement fallisce
+     */
+    public synchronized PreparedStatement acquire(String sql, boolean generatedKeys) throws SQLException {
+        var cached = closed ? null : idle.remove(new Key(sql, generatedKeys));
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        return generatedKeys
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+    }
+
+    /**
+     * Restituisce alla cache uno statement ottenuto con {@link #acquire(String, boolean)}.
+     * <p>
+     * Lo statement viene chiuso invece che conservato se il suo utilizzo non è terminato correttamente,
+     * se la cache è chiusa o se contiene già uno statement inutilizzato per lo stesso SQL.
+     * </p>
+     *
+     * @param sql           istruzione SQL con cui è stato ottenuto lo statement
+     * @param generatedKeys se lo statement restituisce le chiavi generate
+     * @param stm           lo statement
+     * @param reusable      {@code false} se l'utilizzo dello statement è terminato con un errore
+     */
+    public synchronized void release(String sql, boolean generatedKeys, PreparedStatement stm, boolean reusable) {
+        var key = new Key(sql, generatedKeys);
+        if (!reusable || closed || idle.containsKey(key)) {
+            closeQuietly(stm);
+            return;
+        }
+        try {
+            stm.clearParameters();
+        } catch (SQLException e) {
+            closeQuietly(stm);
+            return;
+        }
+        idle.put(key, stm);
+    }
+
+    /**
+     * Restituisce i contatori di utilizzo della cache.
+     *
+     * @return i contatori correnti
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions);
+    }
+
+    /**
+     * Chiude gli statement inutilizzati; quelli ancora in uso vengono chiusi quando restituiti.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (var stm : idle.values()) {
+            closeQuietly(stm);
+        }
+        idle.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement stm) {
+        try {
+            stm.close();
+        } catch (SQLException e) {
+            SystemLogger.log("Could not close prepared statement", e);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package it.unisa.diem.wordageddon_g16.db.contracts;
 
+import it.unisa.diem.wordageddon_g16.models.Document;
 import it.unisa.diem.wordageddon_g16.models.GameReport;
+import it.unisa.diem.wordageddon_g16.models.GameReportSummary;
 import it.unisa.diem.wordageddon_g16.models.User;
+import it.unisa.diem.wordageddon_g16.models.UserStats;
 
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -22,4 +26,38 @@ public interface GameReportDAO extends DAO<GameReport> {
      * @return un {@code Optional} contenente il {@link GameReport} se esistente, altrimenti vuoto
      */
     Optional<GameReport> selectBy(User user, Timestamp timestamp);
+
+    /**
+     * Recupera i riepiloghi dei report di un utente dal più recente, una pagina alla volta,
+     * senza leggerne i documenti.
+     *
+     * @param user  l'utente autore dei report
+     * @param after ultimo riepilogo della pagina precedente, escluso, {@code null} per partire dal report più recente
+     * @param limit numero massimo di riepiloghi, negativo per leggerli tutti
+     * @return i riepiloghi dei report dell'utente, dal più recente al meno recente
+     */
+    List<GameReportSummary> selectSummariesByUser(User user, GameReportSummary after, int limit);
+
+    /**
+     * Recupera i documenti di un report.
+     *
+     * @param summary il riepilogo del report, identificato dal suo id
+     * @return i documenti del report, vuota se il report non esiste
+     */
+    List<Document> selectDocuments(GameReportSummary summary);
+
+    /**
+     * Recupera le statistiche aggregate delle partite di un utente, una per ciascuna difficoltà giocata.
+     *
+     * @param user l'utente di cui leggere le statistiche
+     * @return le statistiche dell'utente, vuota se non ha giocato partite
+     */
+    List<UserStats> selectStats(User user);
+
+    /**
+     * Ricalcola dai report tutte le statistiche aggregate e i totali per utente, verificandone la coerenza.
+     *
+     * @return il numero di righe di statistiche e di totali che non corrispondevano ai report e sono state corrette
+     */
+    int rebuildStats();
 }
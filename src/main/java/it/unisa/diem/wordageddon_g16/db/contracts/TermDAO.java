@@ -0,0 +1,21 @@
+package it.unisa.diem.wordageddon_g16.db.contracts;
+
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+
+/**
+ * Interfaccia per la gestione del dizionario dei termini salvato nel database.
+ * <p>
+ * Ogni termine associa una parola a un id intero, usato dalle WDM al posto del testo della parola.
+ */
+public interface TermDAO extends DAO<String> {
+
+    /**
+     * Carica nel {@link TermDictionary} tutti i termini salvati nel database.
+     */
+    void loadDictionary();
+
+    /**
+     * Salva nel database i termini registrati nel {@link TermDictionary} che non sono ancora stati salvati.
+     */
+    void persistNewTerms();
+}
@@ -0,0 +1,30 @@
+package it.unisa.diem.wordageddon_g16.db.contracts;
+
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.TermHistogram;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Interfaccia per la gestione degli istogrammi completi dei termini dei documenti,
+ * da cui vengono derivate le WDM filtrate.
+ */
+public interface TermHistogramDAO extends DAO<TermHistogram> {
+
+    /**
+     * Recupera l'istogramma salvato per un documento.
+     *
+     * @param document il documento di cui si vuole ottenere l'istogramma
+     * @return un {@code Optional} contenente l'istogramma, o vuoto se non è stato salvato
+     */
+    Optional<TermHistogram> selectBy(Document document);
+
+    /**
+     * Recupera i documenti per cui non è salvato alcun istogramma.
+     * Le WDM di questi documenti possono essere ricalcolate solo rileggendone il contenuto.
+     *
+     * @return i documenti senza istogramma
+     */
+    List<Document> selectDocumentsWithoutHistogram();
+}
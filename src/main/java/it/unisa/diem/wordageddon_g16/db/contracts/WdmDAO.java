@@ -3,6 +3,8 @@ package it.unisa.diem.wordageddon_g16.db.contracts;
 import it.unisa.diem.wordageddon_g16.models.Document;
 import it.unisa.diem.wordageddon_g16.models.WDM;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,4 +20,24 @@ public interface WdmDAO extends DAO<WDM> {
      * @return un {@code Optional} contenente la WDM associata, o vuoto se non esiste
      */
     Optional<WDM> selectBy(Document document);
+
+    /**
+     * Recupera con un'unica interrogazione le matrici parola-documento di più documenti.
+     *
+     * @param documents i documenti di cui si vogliono ottenere le frequenze delle parole
+     * @return le WDM trovate; i documenti senza WDM non compaiono nel risultato
+     */
+    List<WDM> selectBy(Collection<Document> documents);
+
+    /**
+     * Allinea la WDM salvata per un documento a quella fornita, modificando solo le righe che differiscono.
+     * <p>
+     * I termini non più presenti vengono eliminati, quelli nuovi o con una frequenza diversa vengono inseriti
+     * o aggiornati; le righe invariate non vengono toccate. Se il documento non ha ancora una WDM salvata,
+     * equivale a un inserimento. Il documento associato viene inserito o aggiornato insieme alla WDM, in modo atomico.
+     *
+     * @param wdm la matrice parola-documento con i valori aggiornati
+     * @return il numero di righe eliminate, inserite o aggiornate
+     */
+    int merge(WDM wdm);
 }
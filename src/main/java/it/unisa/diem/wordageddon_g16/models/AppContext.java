@@ -2,6 +2,8 @@ package it.unisa.diem.wordageddon_g16.models;
 
 import it.unisa.diem.wordageddon_g16.db.contracts.Repository;
 import it.unisa.diem.wordageddon_g16.services.*;
+import it.unisa.diem.wordageddon_g16.utility.InvertedIndex;
+import it.unisa.diem.wordageddon_g16.utility.WordCountIndex;
 
 import java.io.Serializable;
 
@@ -51,10 +53,18 @@ public class AppContext implements Serializable {
      */
     public AppContext(Repository repo) {
         this.repo = repo;
-        authService = new AuthService(this, repo.getDAO("user"));
-        leaderboardService = new LeaderboardService(this, repo.getDAO("gameReport"), repo.getDAO("user"));
-        userPanelService = new UserPanelService(repo.getDAO("gameReport"), repo.getDAO("user"), repo.getDAO("document"), repo.getDAO("stopWord"), repo.getDAO("wdm"), this);
-        gameService = new GameService(this, repo.getDAO("gameReport"), repo.getDAO("wdm"), repo.getDAO("document"), repo.getDAO("stopWord"));
+        // Pagine di classifica già lette, aggiornate al salvataggio dei report e alla registrazione degli utenti
+        var leaderboardCache = new LeaderboardCache();
+        authService = new AuthService(this, repo.getDAO("user"), leaderboardCache);
+        leaderboardService = new LeaderboardService(this, repo.getDAO("gameReport"), leaderboardCache);
+        // Indice invertito della libreria, letto dal servizio di gioco e mantenuto aggiornato dal pannello utente
+        var documentIndex = new InvertedIndex();
+        // Domande pre-generate, prelevate dal servizio di gioco e invalidate dal pannello utente
+        var questionBank = new QuestionBank(repo.getDAO("wdm"), documentIndex);
+        // Documenti ordinati per numero di parole, per la selezione dei documenti di una partita
+        var wordCountIndex = new WordCountIndex();
+        userPanelService = new UserPanelService(repo.getDAO("gameReport"), repo.getDAO("user"), repo.getDAO("document"), repo.getDAO("stopWord"), repo.getDAO("wdm"), repo.getDAO("termHistogram"), documentIndex, questionBank, wordCountIndex, this);
+        gameService = new GameService(this, repo.getDAO("gameReport"), repo.getDAO("document"), repo.getDAO("stopWord"), questionBank, wordCountIndex, leaderboardCache);
     }
 
     /**
@@ -2,8 +2,9 @@ package it.unisa.diem.wordageddon_g16.models;
 
 /**
  * Enum che rappresenta i livelli di difficoltà disponibili nel gioco Wordageddon.
- * Ogni valore è associato a una stringa descrittiva e a un punteggio massimo
- * ottenibile tramite il metodo {@link #getMaxScoreDifficulty(Difficulty)}.
+ * Ogni valore è associato a una stringa descrittiva, a un punteggio massimo
+ * ottenibile tramite il metodo {@link #getMaxScoreDifficulty(Difficulty)} e all'intervallo
+ * di parole da leggere in una partita, insieme al numero massimo di documenti che la compongono.
  *
  * Livelli disponibili:
  * <ul>
@@ -13,14 +14,47 @@ package it.unisa.diem.wordageddon_g16.models;
  * </ul>
  */
 public enum  Difficulty {
-    EASY("Facile"),
-    MEDIUM("Medio"),
-    HARD("Difficile");
+    EASY("Facile", 30, 120, 3),
+    MEDIUM("Medio", 100, 200, 5),
+    HARD("Difficile", 170, 600, 7);
 
     private final String label;
+    private final int minWords;
+    private final int maxWords;
+    private final int maxDocuments;
 
-    Difficulty(String label) {
+    Difficulty(String label, int minWords, int maxWords, int maxDocuments) {
         this.label = label;
+        this.minWords = minWords;
+        this.maxWords = maxWords;
+        this.maxDocuments = maxDocuments;
+    }
+
+    /**
+     * Restituisce il numero minimo di parole da leggere in una partita di questa difficoltà.
+     *
+     * @return numero minimo di parole
+     */
+    public int getMinWords() {
+        return minWords;
+    }
+
+    /**
+     * Restituisce il numero massimo di parole da leggere in una partita di questa difficoltà.
+     *
+     * @return numero massimo di parole
+     */
+    public int getMaxWords() {
+        return maxWords;
+    }
+
+    /**
+     * Restituisce il numero massimo di documenti di una partita di questa difficoltà.
+     *
+     * @return numero massimo di documenti
+     */
+    public int getMaxDocuments() {
+        return maxDocuments;
     }
 
     /**
@@ -0,0 +1,33 @@
+package it.unisa.diem.wordageddon_g16.models;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Riepilogo di un {@link GameReport} per le viste elenco, senza utente né documenti.
+ * <p>
+ * Contiene i soli campi della tabella {@code GameReport}: viene letto senza accedere alle tabelle
+ * {@code User}, {@code Content} e {@code Document}. I documenti della partita si leggono su richiesta,
+ * quando il report viene aperto, identificandolo tramite utente e timestamp.
+ * </p>
+ *
+ * @param id            identificativo del report nella tabella {@code GameReport}
+ * @param username      nome dell'utente che ha effettuato la sessione
+ * @param timestamp     data e ora di fine sessione di gioco
+ * @param difficulty    livello di difficoltà della sessione
+ * @param maxTime       tempo massimo previsto per rispondere alle domande
+ * @param usedTime      tempo effettivamente impiegato nel rispondere alle domande
+ * @param questionCount numero totale di domande generate
+ * @param score         punteggio ottenuto alla fine della sessione
+ */
+public record GameReportSummary(
+    long id,
+    String username,
+    LocalDateTime timestamp,
+    Difficulty difficulty,
+    Duration maxTime,
+    Duration usedTime,
+    int questionCount,
+    int score
+) {
+}
@@ -0,0 +1,21 @@
+package it.unisa.diem.wordageddon_g16.models;
+
+/**
+ * Voce della classifica di gioco, globale o filtrata per difficoltà.
+ *
+ * @param rank                posizione in classifica, a partire da 1
+ * @param username            nome dell'utente
+ * @param favouriteDifficulty difficoltà preferita dell'utente, {@code null} se non nota
+ * @param averageScore        punteggio medio
+ * @param totalScore          punteggio totale accumulato
+ * @param gamesPlayed         numero di partite giocate
+ */
+public record LeaderboardEntry(
+    int rank,
+    String username,
+    Difficulty favouriteDifficulty,
+    int averageScore,
+    int totalScore,
+    int gamesPlayed
+) {
+}
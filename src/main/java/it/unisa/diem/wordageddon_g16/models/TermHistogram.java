@@ -0,0 +1,48 @@
+package it.unisa.diem.wordageddon_g16.models;
+
+import it.unisa.diem.wordageddon_g16.utility.Resources;
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
+import it.unisa.diem.wordageddon_g16.utility.Tokenizer;
+
+import java.io.IOException;
+
+/**
+ * Istogramma completo dei termini di un documento, prima di qualsiasi filtro sulle stopword.
+ * <p>
+ * Viene calcolato una sola volta dal contenuto del documento e salvato nel database: le {@link WDM} filtrate
+ * vengono derivate da esso, per cui una modifica delle stopword o un nuovo tipo di analisi non richiedono
+ * di rileggere i file dei documenti.
+ *
+ * @param document    il documento analizzato
+ * @param frequencies frequenze di tutti i termini, indicizzate per id del {@link TermDictionary}
+ * @param tokenCount  numero totale di token del documento
+ */
+public record TermHistogram(Document document, TermFrequencyMap frequencies, int tokenCount) {
+
+    /**
+     * Calcola l'istogramma di un documento leggendone il contenuto tramite {@link Resources}
+     * e suddividendolo in parole con il {@link Tokenizer}.
+     *
+     * @param document il documento da analizzare
+     * @return l'istogramma dei termini del documento
+     * @throws RuntimeException se si verifica un errore durante la lettura del contenuto del documento
+     */
+    public static TermHistogram of(Document document) {
+        TermDictionary dictionary = TermDictionary.shared();
+        TermFrequencyMap frequencies = new TermFrequencyMap();
+        int[] tokenCount = {0};
+        try {
+            // Il contenuto viene letto e suddiviso a blocchi, senza copiarlo in una String
+            Resources.tokenizeDocument(document.filename(), (buffer, length) -> {
+                frequencies.increment(dictionary.idOf(buffer, length));
+                tokenCount[0]++;
+            });
+        } catch (IOException e) {
+            SystemLogger.log("Errore durante l'analisi del documento " + document.filename(), e);
+            throw new RuntimeException(e);
+        }
+        return new TermHistogram(document, frequencies, tokenCount[0]);
+    }
+}
@@ -0,0 +1,24 @@
+package it.unisa.diem.wordageddon_g16.models;
+
+/**
+ * Statistiche aggregate delle partite di un utente a una data difficoltà.
+ * <p>
+ * Corrisponde a una riga della tabella {@code UserStats}, mantenuta aggiornata dal database a ogni
+ * inserimento, modifica o rimozione di un {@link GameReport}: le statistiche di un utente si leggono
+ * così senza scorrerne i report.
+ * </p>
+ *
+ * @param username    nome dell'utente
+ * @param difficulty  livello di difficoltà delle partite
+ * @param gamesPlayed numero di partite giocate
+ * @param totalScore  somma dei punteggi ottenuti
+ * @param maxScore    punteggio massimo ottenuto
+ */
+public record UserStats(
+    String username,
+    Difficulty difficulty,
+    int gamesPlayed,
+    int totalScore,
+    int maxScore
+) {
+}
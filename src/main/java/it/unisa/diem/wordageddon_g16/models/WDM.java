@@ -1,9 +1,8 @@
 package it.unisa.diem.wordageddon_g16.models;
 
-import it.unisa.diem.wordageddon_g16.utility.Resources;
-import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
 
-import java.io.*;
 import java.util.*;
 
 /**
@@ -20,9 +19,15 @@ public class WDM {
 
     /**
      * Mappa delle parole significative e delle rispettive frequenze nel documento.
-     * La chiave è la parola, il valore è il numero di occorrenze.
+     * La chiave è l'id del termine nel {@link TermDictionary} condiviso, il valore è il numero di occorrenze.
      */
-    private final Map<String, Integer> words;
+    private final TermFrequencyMap words;
+
+    /**
+     * Istogramma completo da cui è stata derivata la WDM, oppure {@code null} se non noto
+     * (ad esempio per le WDM lette dal database).
+     */
+    private final TermHistogram histogram;
 
     /**
      * Costruisce un oggetto WDM associando direttamente una mappa di frequenze a un documento.
@@ -31,51 +36,98 @@ public class WDM {
      * @param document il documento di riferimento
      * @param words    la mappa delle parole e delle loro frequenze
      */
-    public WDM(Document document, Map<String, Integer> words) {
+    public WDM(Document document, TermFrequencyMap words) {
         this.document = document;
         this.words = words;
+        this.histogram = null;
+    }
+
+    /**
+     * Costruisce un oggetto WDM copiando le frequenze da una {@link Map} generica.
+     *
+     * @param document il documento di riferimento
+     * @param words    la mappa delle parole e delle loro frequenze
+     */
+    public WDM(Document document, Map<String, Integer> words) {
+        this(document, new TermFrequencyMap(words.size()));
+        TermDictionary dictionary = TermDictionary.shared();
+        words.forEach((word, count) -> this.words.put(dictionary.idOf(word), count));
     }
 
     /**
      * Costruisce un oggetto WDM eseguendo l'analisi del contenuto testuale di un documento.
      * Vengono escluse le parole presenti nella lista di stopword. Il contenuto viene letto
-     * dal file associato al documento tramite la classe {@link Resources}.
+     * dal file associato al documento e suddiviso in parole tramite {@link TermHistogram#of(Document)}.
      *
      * @param doc        il documento da analizzare
      * @param stopWords  l'insieme delle parole da ignorare durante l'analisi
      * @throws RuntimeException se si verifica un errore durante la lettura del contenuto del documento
      */
     public WDM(Document doc, Set<String> stopWords) {
-        String filename = doc.filename();
-        String title = doc.title();
-        words = new HashMap<>();
+        this(TermHistogram.of(doc), stopWords);
+    }
+
+    /**
+     * Costruisce un oggetto WDM a partire dall'istogramma completo di un documento, escludendo le stopword.
+     * Non viene letto il file del documento; il numero di parole del documento risultante è la somma
+     * delle frequenze dei termini rimasti.
+     *
+     * @param histogram  l'istogramma dei termini del documento
+     * @param stopWords  l'insieme delle parole da ignorare
+     */
+    public WDM(TermHistogram histogram, Set<String> stopWords) {
+        TermDictionary dictionary = TermDictionary.shared();
+        TermFrequencyMap frequencies = histogram.frequencies();
+        // Le stopword vengono escluse una volta per termine distinto, non per ogni occorrenza
+        BitSet stopTerms = new BitSet();
+        for (String stopWord : stopWords) {
+            int term = dictionary.find(stopWord);
+            if (term >= 0) {
+                stopTerms.set(term);
+            }
+        }
+        words = new TermFrequencyMap(frequencies.size());
         int wordCount = 0;
-        try (Scanner scanner = new Scanner(new StringReader(Resources.getDocumentContent(filename)))) {
-            scanner.useDelimiter("[\\p{Punct}'’\\s]+");
-            while (scanner.hasNext()) {
-                String word = scanner.next().toLowerCase();
-                if (!word.isEmpty() && !stopWords.contains(word)) {
-                    words.put(word, words.getOrDefault(word, 0) + 1);
-                    wordCount++;
-                }
+        for (int i = 0; i < frequencies.size(); i++) {
+            int term = frequencies.termAt(i);
+            if (!stopTerms.get(term)) {
+                words.put(term, frequencies.countAt(i));
+                wordCount += frequencies.countAt(i);
             }
-        } catch (IOException e) {
-            SystemLogger.log("Errore durante l'analisi del documento " + filename, e);
-            throw new RuntimeException(e);
         }
 
-        this.document = new Document(filename, title, wordCount);
+        Document doc = histogram.document();
+        this.document = new Document(doc.filename(), doc.title(), wordCount);
+        this.histogram = histogram;
     }
 
     /**
      * Restituisce la mappa delle parole significative e delle loro frequenze.
      *
-     * @return la mappa parola, frequenza
+     * @return vista di sola lettura della mappa parola, frequenza
      */
     public Map<String, Integer> getWords() {
+        return words.asMap(TermDictionary.shared());
+    }
+
+    /**
+     * Restituisce le frequenze dei termini come {@link TermFrequencyMap}, indicizzate per id del {@link TermDictionary}.
+     *
+     * @return la mappa id termine, frequenza del documento
+     */
+    public TermFrequencyMap getWordFrequencies() {
         return words;
     }
 
+    /**
+     * Restituisce l'istogramma completo da cui è stata derivata la WDM.
+     *
+     * @return l'istogramma dei termini del documento, oppure vuoto se non noto
+     */
+    public Optional<TermHistogram> getHistogram() {
+        return Optional.ofNullable(histogram);
+    }
+
     /**
      * Restituisce il documento associato a questa analisi.
      *
@@ -18,16 +18,19 @@ import java.io.*;
 public class AuthService implements Serializable {
     private final AppContext context;
     private final JDBCUserDAO userDAO;
+    private final LeaderboardCache leaderboardCache;
 
     /**
      * Costruttore della classe {@code AuthService}
      *
-     * @param context  AppContent contesto applicativo corrente contenente l'utente attivo
-     * @param userDAO  DAO per la gestione degli utenti
+     * @param context          AppContent contesto applicativo corrente contenente l'utente attivo
+     * @param userDAO          DAO per la gestione degli utenti
+     * @param leaderboardCache cache della classifica, invalidata alla registrazione di un utente
      */
-    public AuthService(AppContext context, JDBCUserDAO userDAO) {
+    public AuthService(AppContext context, JDBCUserDAO userDAO, LeaderboardCache leaderboardCache) {
         this.context = context;
         this.userDAO = userDAO;
+        this.leaderboardCache = leaderboardCache;
     }
 
     /**
@@ -67,6 +70,7 @@ public class AuthService implements Serializable {
         if(firstUser || userDAO.selectBy(username).isEmpty()) {
             User user = new User(username, password, firstUser); // If no users, set as admin
             userDAO.insert(user);
+            leaderboardCache.usersChanged();
             context.setCurrentUser(user);
             saveSession(user);
             return true;
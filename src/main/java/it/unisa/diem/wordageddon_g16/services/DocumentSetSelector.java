@@ -0,0 +1,206 @@
+package it.unisa.diem.wordageddon_g16.services;
+
+import it.unisa.diem.wordageddon_g16.models.Difficulty;
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.utility.Sampling;
+import it.unisa.diem.wordageddon_g16.utility.WordCountIndex;
+
+import java.util.*;
+
+/**
+ * Selezione dei documenti di una partita come problema di somma di sottoinsiemi limitata.
+ * <p>
+ * Cerca al più {@link Difficulty#getMaxDocuments()} documenti il cui numero totale di parole sia compreso
+ * tra {@code wordsNeeded - tolerance} e {@code wordsNeeded + tolerance}. Poiché i documenti utili hanno al più
+ * {@code wordsNeeded + tolerance} parole, i numeri di parole distinti sono pochi anche con librerie molto grandi:
+ * la programmazione dinamica lavora sui gruppi di documenti con lo stesso numero di parole, contigui nel
+ * {@link WordCountIndex}, e per ogni numero di documenti tiene l'insieme delle somme raggiungibili in un bitset.
+ * Il costo dipende quindi dal budget di parole e non dalla dimensione della libreria.
+ * </p>
+ * <p>
+ * Se una combinazione che rispetta la tolleranza esiste viene sempre trovata. La varietà tra le partite è data
+ * dall'ordine casuale dei gruppi, dalla scelta casuale della somma tra quelle ammesse, del numero di documenti
+ * di ciascun gruppo durante la ricostruzione e dei documenti all'interno di ciascun gruppo.
+ * </p>
+ */
+class DocumentSetSelector {
+    private final Random random;
+
+    /**
+     * Costruisce un selettore che usa il generatore di numeri casuali indicato.
+     *
+     * @param random generatore di numeri casuali
+     */
+    DocumentSetSelector(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Seleziona i documenti di una partita.
+     * <p>
+     * Vengono preferiti i documenti del bucket della difficoltà; se con questi non si rispetta la tolleranza
+     * si considerano tutti i documenti. Se nessuna combinazione rispetta la tolleranza, viene scelta quella con il
+     * numero di parole più vicino per difetto al massimo ammesso; se nessun documento rientra nel budget,
+     * viene restituito il documento non vuoto più breve.
+     * </p>
+     *
+     * @param index       i documenti della libreria ordinati per numero di parole
+     * @param difficulty  la difficoltà, che determina bucket e numero massimo di documenti
+     * @param wordsNeeded numero di parole da leggere
+     * @param tolerance   scarto ammesso sul numero di parole
+     * @return i documenti selezionati, in ordine casuale
+     * @throws IllegalStateException se la libreria non contiene documenti
+     */
+    List<Document> select(WordCountIndex.Snapshot index, Difficulty difficulty, int wordsNeeded, int tolerance) {
+        if (index.size() == 0) {
+            throw new IllegalStateException("No documents available for the game");
+        }
+        int capacity = wordsNeeded + tolerance;
+        int minSum = Math.max(1, wordsNeeded - tolerance);
+        int maxDocs = difficulty.getMaxDocuments();
+
+        // I documenti vuoti non contribuiscono al budget, quelli troppo lunghi non possono farne parte
+        int from = index.firstRankAtLeast(1);
+        int to = index.firstRankAbove(capacity);
+        int[] bucket = index.bucket(difficulty);
+
+        List<Document> result = null;
+        if (bucket[0] > from || bucket[1] < to) {
+            result = solve(index, Math.max(from, bucket[0]), Math.min(to, bucket[1]), minSum, capacity, maxDocs, true);
+        }
+        if (result == null) {
+            result = solve(index, from, to, minSum, capacity, maxDocs, false);
+        }
+        if (result == null) {
+            // Il documento più corto, escludendo quelli vuoti se ce ne sono altri
+            result = new ArrayList<>(List.of(index.get(Math.min(from, index.size() - 1))));
+        }
+        Collections.shuffle(result, random);
+        return result;
+    }
+
+    /**
+     * Risolve il problema sui documenti di un intervallo di ranghi.
+     *
+     * @param index    i documenti ordinati per numero di parole
+     * @param from     primo rango dei documenti candidati
+     * @param to       limite superiore (escluso) dei ranghi candidati
+     * @param minSum   numero minimo di parole ammesso
+     * @param capacity numero massimo di parole ammesso
+     * @param maxDocs  numero massimo di documenti
+     * @param fitOnly  se {@code true} non viene restituita una combinazione che non rispetti la tolleranza
+     * @return i documenti selezionati, oppure {@code null} se non esiste una combinazione adatta
+     */
+    private List<Document> solve(WordCountIndex.Snapshot index, int from, int to, int minSum, int capacity,
+                                 int maxDocs, boolean fitOnly) {
+        if (from >= to) {
+            return null;
+        }
+        // Gruppi di documenti con lo stesso numero di parole, visitati in ordine casuale
+        int[] groupStart = new int[Math.min(to - from, capacity) + 1];
+        int groups = 0;
+        for (int rank = from; rank < to; rank = index.firstRankAbove(index.wordCountAt(rank))) {
+            groupStart[groups++] = rank;
+        }
+        int[] order = Sampling.permutation(groups, random);
+
+        // Bitset delle somme raggiungibili con c documenti dei primi g gruppi visitati, in un unico array:
+        // la riga (g, c) inizia alla posizione (g * (maxDocs + 1) + c) * words
+        int words = (capacity >>> 6) + 1;
+        int layer = (maxDocs + 1) * words;
+        long[] reachable = new long[(groups + 1) * layer];
+        reachable[0] = 1L;
+        for (int g = 0; g < groups; g++) {
+            int start = groupStart[order[g]];
+            int value = index.wordCountAt(start);
+            int copies = Math.min(maxDocs, index.firstRankAbove(value) - start);
+            int previous = g * layer;
+            int current = previous + layer;
+            System.arraycopy(reachable, previous, reachable, current, layer);
+            for (int j = 1; j <= copies && j * value <= capacity; j++) {
+                for (int c = maxDocs; c >= j; c--) {
+                    orShifted(reachable, previous + (c - j) * words, j * value, current + c * words, words, capacity);
+                }
+            }
+        }
+
+        // Stato finale scelto a caso tra quelli che rispettano la tolleranza, altrimenti il più vicino per difetto
+        int last = groups * layer;
+        int chosenCount = -1;
+        int chosenSum = -1;
+        int matches = 0;
+        for (int c = 1; c <= maxDocs; c++) {
+            for (int sum = minSum; sum <= capacity; sum++) {
+                if (isSet(reachable, last + c * words, sum) && random.nextInt(++matches) == 0) {
+                    chosenCount = c;
+                    chosenSum = sum;
+                }
+            }
+        }
+        if (chosenCount < 0) {
+            if (fitOnly) {
+                return null;
+            }
+            for (int sum = minSum - 1; sum > 0 && chosenCount < 0; sum--) {
+                for (int c = 1; c <= maxDocs; c++) {
+                    if (isSet(reachable, last + c * words, sum) && random.nextInt(++matches) == 0) {
+                        chosenCount = c;
+                        chosenSum = sum;
+                    }
+                }
+            }
+            if (chosenCount < 0) {
+                return null;
+            }
+        }
+
+        // Ricostruzione a ritroso: per ogni gruppo si sceglie a caso quanti documenti usarne tra le scelte valide
+        List<Document> result = new ArrayList<>(chosenCount);
+        int count = chosenCount;
+        int sum = chosenSum;
+        for (int g = groups - 1; g >= 0 && count > 0; g--) {
+            int start = groupStart[order[g]];
+            int value = index.wordCountAt(start);
+            int end = index.firstRankAbove(value);
+            int copies = Math.min(Math.min(count, end - start), sum / value);
+            int used = -1;
+            int options = 0;
+            for (int j = 0; j <= copies; j++) {
+                if (isSet(reachable, g * layer + (count - j) * words, sum - j * value) && random.nextInt(++options) == 0) {
+                    used = j;
+                }
+            }
+            for (int rank : Sampling.distinctIndices(start, end, used, random)) {
+                result.add(index.get(rank));
+            }
+            count -= used;
+            sum -= used * value;
+        }
+        return result;
+    }
+
+    /**
+     * Aggiunge al bitset che inizia in {@code target} le somme del bitset che inizia in {@code source}
+     * aumentate di {@code shift}, fino a {@code capacity}.
+     */
+    private static void orShifted(long[] bits, int source, int shift, int target, int words, int capacity) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int i = words - 1; i >= wordShift; i--) {
+            long shifted = bits[source + i - wordShift] << bitShift;
+            if (bitShift != 0 && i - wordShift > 0) {
+                shifted |= bits[source + i - wordShift - 1] >>> (64 - bitShift);
+            }
+            bits[target + i] |= shifted;
+        }
+        // Le somme oltre la capacità non sono ammesse
+        int lastBits = (capacity & 63) + 1;
+        if (lastBits < 64) {
+            bits[target + words - 1] &= (1L << lastBits) - 1;
+        }
+    }
+
+    private static boolean isSet(long[] bits, int offset, int position) {
+        return position >= 0 && (bits[offset + (position >>> 6)] & (1L << (position & 63))) != 0;
+    }
+}
@@ -0,0 +1,169 @@
+package it.unisa.diem.wordageddon_g16.services;
+
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.WDM;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dati aggregati sui documenti di una partita, calcolati una sola volta e condivisi da tutti i generatori di domande.
+ * <p>
+ * Contiene le frequenze cumulative di tutti i termini dei documenti della partita e, sia per le frequenze cumulative
+ * sia per ciascun documento, l'elenco dei termini ordinati per frequenza crescente ({@link SortedFrequencies}):
+ * le prime posizioni sono i termini meno frequenti, le ultime i più frequenti.
+ * </p>
+ */
+public class GameAggregates {
+
+    /**
+     * Termini di una mappa di frequenze ordinati per frequenza crescente (a parità di frequenza, per id).
+     * Il rango di un termine è la sua posizione in questo ordine.
+     */
+    public static class SortedFrequencies {
+        private final int[] terms;
+        private final int[] counts;
+
+        private SortedFrequencies(TermFrequencyMap frequencies) {
+            int size = frequencies.size();
+            // Frequenza e id impacchettati in un long, per ordinare senza boxing
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long) frequencies.countAt(i) << 32) | (frequencies.termAt(i) & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed);
+            terms = new int[size];
+            counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                terms[i] = (int) packed[i];
+                counts[i] = (int) (packed[i] >>> 32);
+            }
+        }
+
+        /**
+         * Restituisce il numero di termini.
+         *
+         * @return numero di termini
+         */
+        public int size() {
+            return terms.length;
+        }
+
+        /**
+         * Restituisce l'id del termine di un dato rango.
+         *
+         * @param rank rango compreso tra 0 (meno frequente) e {@code size() - 1} (più frequente)
+         * @return l'id del termine
+         */
+        public int termAt(int rank) {
+            return terms[rank];
+        }
+
+        /**
+         * Restituisce la frequenza del termine di un dato rango.
+         *
+         * @param rank rango compreso tra 0 (meno frequente) e {@code size() - 1} (più frequente)
+         * @return la frequenza
+         */
+        public int countAt(int rank) {
+            return counts[rank];
+        }
+
+        /**
+         * Restituisce il primo rango con frequenza maggiore o uguale a quella indicata.
+         *
+         * @param count frequenza di riferimento
+         * @return il rango, oppure {@code size()} se nessun termine raggiunge la frequenza
+         */
+        public int firstRankAtLeast(int count) {
+            int low = 0;
+            int high = counts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (counts[mid] < count) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Restituisce il primo rango con frequenza strettamente maggiore di quella indicata.
+         *
+         * @param count frequenza di riferimento
+         * @return il rango, oppure {@code size()} se nessun termine supera la frequenza
+         */
+        public int firstRankAbove(int count) {
+            return count == Integer.MAX_VALUE ? counts.length : firstRankAtLeast(count + 1);
+        }
+
+        /**
+         * Restituisce la parola del termine di un dato rango.
+         *
+         * @param rank rango del termine
+         * @return la parola
+         */
+        public String wordAt(int rank) {
+            return TermDictionary.shared().wordOf(terms[rank]);
+        }
+    }
+
+    private final TermFrequencyMap merged;
+    private final SortedFrequencies mergedSorted;
+    private final Map<Document, SortedFrequencies> documentSorted = new HashMap<>();
+
+    /**
+     * Calcola gli aggregati a partire dalle WDM dei documenti della partita.
+     *
+     * @param wdmMap le WDM della partita, per documento
+     */
+    public GameAggregates(Map<Document, WDM> wdmMap) {
+        merged = new TermFrequencyMap();
+        for (var entry : wdmMap.entrySet()) {
+            TermFrequencyMap frequencies = entry.getValue().getWordFrequencies();
+            // L'aggregazione avviene sugli id interi del TermDictionary, senza confronti tra stringhe
+            frequencies.forEach(merged::add);
+            documentSorted.put(entry.getKey(), new SortedFrequencies(frequencies));
+        }
+        mergedSorted = new SortedFrequencies(merged);
+    }
+
+    /**
+     * Restituisce le frequenze cumulative dei termini su tutti i documenti della partita.
+     *
+     * @return mappa id termine → frequenza cumulativa
+     */
+    public TermFrequencyMap merged() {
+        return merged;
+    }
+
+    /**
+     * Restituisce i termini di tutti i documenti della partita ordinati per frequenza cumulativa.
+     *
+     * @return i termini ordinati per frequenza cumulativa crescente
+     */
+    public SortedFrequencies mergedByFrequency() {
+        return mergedSorted;
+    }
+
+    /**
+     * Restituisce i termini di un documento ordinati per frequenza; i primi e gli ultimi ranghi
+     * sono rispettivamente i termini meno e più frequenti del documento.
+     *
+     * @param document un documento della partita
+     * @return i termini del documento ordinati per frequenza crescente
+     * @throws IllegalArgumentException se il documento non fa parte della partita
+     */
+    public SortedFrequencies byFrequency(Document document) {
+        SortedFrequencies sorted = documentSorted.get(document);
+        if (sorted == null) {
+            throw new IllegalArgumentException("Document not in game: " + document.filename());
+        }
+        return sorted;
+    }
+}
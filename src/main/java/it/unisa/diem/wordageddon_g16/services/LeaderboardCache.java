@@ -0,0 +1,151 @@
+package it.unisa.diem.wordageddon_g16.services;
+
+import it.unisa.diem.wordageddon_g16.models.Difficulty;
+import it.unisa.diem.wordageddon_g16.models.LeaderboardEntry;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache in memoria delle pagine di classifica già lette.
+ * <p>
+ * Per ciascuna classifica (globale e per difficoltà) conserva le ultime pagine lette e, insieme, il numero di voci
+ * della classifica: le visualizzazioni ripetute della stessa pagina non interrogano il database. La cache viene
+ * aggiornata in modo incrementale: il salvataggio di un report invalida solo la classifica globale e quella della
+ * difficoltà della partita ({@link #reportSaved(Difficulty)}), mentre l'aggiunta o la rimozione di utenti,
+ * che sposta le posizioni di tutte le classifiche, le invalida tutte ({@link #usersChanged()}).
+ * </p>
+ * <p>
+ * Le voci sono memorizzate così come lette dal database, senza evidenziare l'utente corrente.
+ * Sono disponibili i contatori delle richieste servite dalla cache, di quelle che hanno richiesto una lettura
+ * e del tempo totale speso nelle letture, tramite {@link #getStats()}.
+ * </p>
+ */
+public class LeaderboardCache {
+
+    /**
+     * Contatori di utilizzo della cache.
+     *
+     * @param hits        richieste servite dalla cache
+     * @param misses      richieste che hanno richiesto una lettura dal database
+     * @param rebuildTime tempo totale speso nelle letture dal database, in nanosecondi
+     */
+    public record Stats(long hits, long misses, long rebuildTime) {
+    }
+
+    /**
+     * Numero massimo di pagine conservate per ciascuna classifica.
+     */
+    private static final int MAX_PAGES = 32;
+
+    /**
+     * Pagine di ciascuna classifica, per posizione e dimensione della pagina, in ordine di accesso:
+     * la classifica globale in posizione 0, quella di ciascuna difficoltà in posizione {@code ordinal() + 1}.
+     */
+    @SuppressWarnings("unchecked")
+    private final Map<Long, List<LeaderboardEntry>>[] pages = new Map[Difficulty.values().length + 1];
+
+    /**
+     * Numero di voci delle classifiche, -1 se non letto.
+     */
+    private int entryCount = -1;
+
+    private long hits;
+    private long misses;
+    private long rebuildTime;
+
+    /**
+     * Costruisce una cache vuota.
+     */
+    public LeaderboardCache() {
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<LeaderboardEntry>> eldest) {
+                    return size() > MAX_PAGES;
+                }
+            };
+        }
+    }
+
+    /**
+     * Restituisce una pagina di classifica, leggendola con il loader indicato se non è in cache.
+     *
+     * @param difficulty difficoltà della classifica, {@code null} per la classifica globale
+     * @param offset     posizione in classifica della prima voce
+     * @param limit      numero massimo di voci
+     * @param loader     legge la pagina dal database
+     * @return le voci della pagina, non modificabili
+     */
+    public synchronized List<LeaderboardEntry> page(Difficulty difficulty, int offset, int limit,
+                                                                      Supplier<List<LeaderboardEntry>> loader) {
+        var scope = pages[scopeOf(difficulty)];
+        long key = ((long) offset << 32) | limit;
+        var cached = scope.get(key);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        long start = System.nanoTime();
+        var loaded = List.copyOf(loader.get());
+        rebuildTime += System.nanoTime() - start;
+        scope.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Restituisce il numero di voci delle classifiche, leggendolo con il loader indicato se non è in cache.
+     *
+     * @param loader legge il numero di voci dal database
+     * @return il numero di voci
+     */
+    public synchronized int entryCount(IntSupplier loader) {
+        if (entryCount >= 0) {
+            hits++;
+            return entryCount;
+        }
+        misses++;
+        long start = System.nanoTime();
+        entryCount = loader.getAsInt();
+        rebuildTime += System.nanoTime() - start;
+        return entryCount;
+    }
+
+    /**
+     * Aggiorna la cache dopo il salvataggio di un report, invalidando la classifica globale
+     * e quella della difficoltà della partita.
+     *
+     * @param difficulty difficoltà della partita salvata
+     */
+    public synchronized void reportSaved(Difficulty difficulty) {
+        pages[scopeOf(null)].clear();
+        pages[scopeOf(difficulty)].clear();
+    }
+
+    /**
+     * Invalida tutte le classifiche dopo l'aggiunta o la rimozione di utenti.
+     */
+    public synchronized void usersChanged() {
+        for (var scope : pages) {
+            scope.clear();
+        }
+        entryCount = -1;
+    }
+
+    /**
+     * Restituisce i contatori di utilizzo della cache.
+     *
+     * @return i contatori correnti
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, rebuildTime);
+    }
+
+    private static int scopeOf(Difficulty difficulty) {
+        return difficulty == null ? 0 : difficulty.ordinal() + 1;
+    }
+}
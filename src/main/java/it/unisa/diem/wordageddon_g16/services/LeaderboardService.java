@@ -1,14 +1,14 @@
 package it.unisa.diem.wordageddon_g16.services;
 
 import it.unisa.diem.wordageddon_g16.db.JDBCGameReportDAO;
-import it.unisa.diem.wordageddon_g16.db.contracts.UserDAO;
 import it.unisa.diem.wordageddon_g16.models.AppContext;
 import it.unisa.diem.wordageddon_g16.models.Difficulty;
-import it.unisa.diem.wordageddon_g16.models.GameReport;
+import it.unisa.diem.wordageddon_g16.models.LeaderboardEntry;
 import it.unisa.diem.wordageddon_g16.models.User;
+import it.unisa.diem.wordageddon_g16.utility.Config;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Classe che gestisce la classifica globale e filtrata per difficoltà nel gioco.
@@ -17,122 +17,143 @@ import java.util.stream.Collectors;
  * statistiche aggregate come punteggio medio, totale, e numero di partite giocate.
  * Evidenzia l'utente corrente nella lista e determina la difficoltà preferita se non filtrata.
  * </p>
+ * <p>
+ * La classifica viene letta a pagine, dagli indici di classifica del database: i metodi accettano una difficoltà
+ * oppure {@code null} per la classifica globale, e permettono di leggere i primi classificati, una pagina qualsiasi
+ * o la posizione di un utente con i giocatori vicini, senza caricare l'intera classifica. Le pagine e il numero di voci
+ * vengono conservati nella {@link LeaderboardCache}, aggiornata al salvataggio dei report e alla registrazione degli utenti.
+ * </p>
  */
 public class LeaderboardService {
-    /**
-     * Record interno che rappresenta una voce nella classifica.
-     * Contiene il nome utente, la difficoltà preferita (se nota), il punteggio medio,
-     * il punteggio totale accumulato e il numero di partite giocate.
-     */
-    public record LeaderboardEntry(
-        String username,
-        Difficulty favouriteDifficulty, // nullable
-        int averageScore,
-        int totalScore,
-        int gamesPlayed
-    ){}
+    private static final int PAGE_SIZE = readPageSize();
+
     private final JDBCGameReportDAO gameReportDAO;
-    private final Collection<User> users;
-    private final User currentUser;
+    private final AppContext context;
+    private final LeaderboardCache cache;
 
     /**
      * Costruttore della classe {@code LeaderboardService}.
      *
      * @param context       il contesto applicativo corrente contenente l'utente attivo
      * @param gameReportDAO DAO per i report di gioco
-     * @param userDAO       DAO per la selezione degli utenti
+     * @param cache         cache delle pagine di classifica già lette
      */
-    public LeaderboardService(AppContext context, JDBCGameReportDAO gameReportDAO, UserDAO userDAO) {
-        this.currentUser = context.getCurrentUser();
+    public LeaderboardService(AppContext context, JDBCGameReportDAO gameReportDAO, LeaderboardCache cache) {
+        this.context = context;
         this.gameReportDAO = gameReportDAO;
-        this.users = userDAO.selectAll();
+        this.cache = cache;
     }
 
     /**
-     * Restituisce la classifica globale di tutti gli utenti, indipendentemente dalla difficoltà.
-     * <p>
-     * Ogni voce include punteggio medio, totale e statistiche aggregate.
-     * </p>
+     * Restituisce il numero di voci di una pagina della classifica, letto da {@link Config.Props#LEADERBOARD_PAGE_SIZE}.
      *
-     * @return lista ordinata di {@link LeaderboardEntry} per tutti gli utenti
+     * @return il numero di voci per pagina
      */
-    public List<LeaderboardEntry> getGlobalLeaderboard() {
-        return getLeaderboardBase(null);
+    public int getPageSize() {
+        return PAGE_SIZE;
     }
 
     /**
-     * Restituisce la classifica filtrata per una specifica difficoltà.
+     * Restituisce il numero di voci della classifica, uguale per la classifica globale e per quelle per difficoltà
+     * perché vi compaiono tutti gli utenti.
      *
-     * @param difficulty difficoltà da considerare per la classifica
-     * @return lista ordinata di {@link LeaderboardEntry} relativa alla difficoltà selezionata
-     * @throws IllegalArgumentException se {@code difficulty} è {@code null}
+     * @return il numero di voci della classifica
      */
-    public List<LeaderboardEntry> getLeaderboardByDifficulty(Difficulty difficulty) {
-        if (difficulty == null) {
-            throw new IllegalArgumentException("Difficulty cannot be null");
-        }
-        return getLeaderboardBase(difficulty);
+    public int getEntryCount() {
+        return cache.entryCount(gameReportDAO::countLeaderboard);
     }
+
     /**
-     * Metodo interno che costruisce la classifica base, utilizzata sia globalmente che per singola difficoltà.
-     * Per ogni utente:
-     * <ul>
-     *   <li>Recupera i report di gioco filtrati (se richiesto)</li>
-     *   <li>Calcola media, totale e numero di partite</li>
-     *   <li>Determina la difficoltà preferita se non filtrato</li>
-     *   <li>Evidenzia l'utente corrente apponendo "(Tu)"</li>
-     * </ul>
+     * Restituisce i primi classificati.
      *
-     * @param difficulty difficoltà da filtrare, {@code null} per classifica globale
-     * @return lista ordinata di {@link LeaderboardEntry}
+     * @param difficulty difficoltà da considerare, {@code null} per la classifica globale
+     * @param count      numero di voci da restituire
+     * @return i primi {@code count} classificati, in ordine di classifica
+     * @throws IllegalArgumentException se {@code count} è negativo
      */
-    private List<LeaderboardEntry> getLeaderboardBase(Difficulty difficulty) {
-        var result = new ArrayList<LeaderboardEntry>();
-        for (User user : users) {
-            Object[] params;
-            if (difficulty != null)
-                params = new Object[]{user.getName(), difficulty.name()};
-            else
-                params = new Object[]{user.getName()};
+    public List<LeaderboardEntry> getTopPlayers(Difficulty difficulty, int count) {
+        return getLeaderboardPage(difficulty, 0, count);
+    }
 
-            var reports = gameReportDAO.selectWhere(
-                    "user = ?" + (difficulty != null ? " AND difficulty = ?" : ""),
-                    params
-            );
+    /**
+     * Restituisce una pagina della classifica.
+     * <p>
+     * Ogni voce include punteggio medio, totale e statistiche aggregate; la difficoltà preferita è valorizzata
+     * solo nella classifica globale.
+     * </p>
+     *
+     * @param difficulty difficoltà da considerare, {@code null} per la classifica globale
+     * @param offset     posizione in classifica (a partire da 0) della prima voce
+     * @param limit      numero massimo di voci
+     * @return le voci della pagina, in ordine di classifica
+     * @throws IllegalArgumentException se {@code offset} o {@code limit} sono negativi
+     */
+    public List<LeaderboardEntry> getLeaderboardPage(Difficulty difficulty, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        if (limit == 0) {
+            return List.of();
+        }
+        return markCurrentUser(cache.page(difficulty, offset, limit,
+                () -> gameReportDAO.selectLeaderboard(difficulty, offset, limit)));
+    }
 
-            int totalScore;
-            int gamesPlayed;
-            int averageScore;
+    /**
+     * Restituisce la posizione di un utente in classifica insieme ai giocatori che lo precedono e lo seguono.
+     *
+     * @param difficulty difficoltà da considerare, {@code null} per la classifica globale
+     * @param username   il nome dell'utente
+     * @param radius     numero di giocatori da includere prima e dopo l'utente
+     * @return le voci attorno all'utente, in ordine di classifica; vuota se l'utente non esiste
+     * @throws IllegalArgumentException se {@code radius} è negativo
+     */
+    public List<LeaderboardEntry> getNeighbours(Difficulty difficulty, String username, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative");
+        }
+        int rank = gameReportDAO.selectRank(difficulty, username);
+        if (rank < 0) {
+            return List.of();
+        }
+        int offset = Math.max(0, rank - radius);
+        return getLeaderboardPage(difficulty, offset, rank - offset + radius + 1);
+    }
 
-            if (reports.isEmpty()){
-                totalScore = 0;
-                gamesPlayed = 0;
-                averageScore = 0;
-            }
-            else {
-                totalScore = reports.stream().mapToInt(GameReport::score).sum();
-                gamesPlayed = reports.size();
-                averageScore = totalScore / gamesPlayed;
-            }
-            Difficulty favouriteDifficulty = null;
-            if(difficulty==null)
-                favouriteDifficulty = reports.stream()
-                    .map(GameReport::difficulty)
-                        // Si raggruppano le difficoltá per se stesse tramite d -> d
-                    .collect(Collectors.groupingBy(d -> d,Collectors.counting()))
-                    .entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(null);
+    /**
+     * Restituisce i contatori di utilizzo della cache delle pagine di classifica.
+     *
+     * @return richieste servite dalla cache, letture dal database e tempo speso nelle letture
+     */
+    public LeaderboardCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
 
-            var username = user.equals(currentUser) ? user.getName() + " (Tu)" : user.getName();
-            result.add(new LeaderboardEntry(
-                    username,
-                    favouriteDifficulty,
-                    averageScore,
-                    totalScore,
-                    gamesPlayed
-            ));
+    /**
+     * Evidenzia l'utente corrente apponendo "(Tu)" al nome. L'utente viene letto dal contesto a ogni chiamata,
+     * perché il servizio è creato prima dell'autenticazione e l'utente può cambiare.
+     *
+     * @param entries voci della classifica
+     * @return una nuova lista con le voci, con l'utente corrente evidenziato
+     */
+    private List<LeaderboardEntry> markCurrentUser(List<LeaderboardEntry> entries) {
+        User currentUser = context.getCurrentUser();
+        var result = new ArrayList<>(entries);
+        if (currentUser != null) {
+            result.replaceAll(entry -> entry.username().equals(currentUser.getName())
+                    ? new LeaderboardEntry(entry.rank(), entry.username() + " (Tu)", entry.favouriteDifficulty(),
+                            entry.averageScore(), entry.totalScore(), entry.gamesPlayed())
+                    : entry);
         }
-        result.sort(Comparator.comparingInt(LeaderboardEntry::averageScore).reversed());
-
         return result;
     }
+
+    private static int readPageSize() {
+        try {
+            int size = Integer.parseInt(Config.get(Config.Props.LEADERBOARD_PAGE_SIZE).trim());
+            return size > 0 ? size : 50;
+        } catch (RuntimeException e) {
+            return 50;
+        }
+    }
 }
@@ -0,0 +1,412 @@
+package it.unisa.diem.wordageddon_g16.services;
+
+import it.unisa.diem.wordageddon_g16.db.contracts.WdmDAO;
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.Question;
+import it.unisa.diem.wordageddon_g16.models.WDM;
+import it.unisa.diem.wordageddon_g16.utility.Config;
+import it.unisa.diem.wordageddon_g16.utility.InvertedIndex;
+import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Banca delle domande pre-generate.
+ * <p>
+ * Mantiene delle riserve ("pool") di domande già pronte, per ciascun {@link Question.QuestionType}:
+ * <ul>
+ *   <li>per singolo documento, per le domande che riguardano un solo documento;</li>
+ *   <li>per insieme di documenti, per le domande che riguardano tutti i documenti di una partita.</li>
+ * </ul>
+ * Un worker in background riempie le riserve quando vengono consumate, quando si prepara una nuova partita
+ * e quando cambiano i documenti o le stopword, così che {@link #draw(List, int)} preleva le domande
+ * senza doverle generare. Se una riserva è vuota, la domanda viene generata sul momento.
+ * </p>
+ * <p>
+ * Le riserve invalidate vengono sostituite da nuove istanze: le domande generate nel frattempo dal worker
+ * sui dati non più validi finiscono nelle riserve scartate e non vengono mai prelevate.
+ * </p>
+ */
+public class QuestionBank {
+    /**
+     * Numero di domande mantenute pronte per ciascun tipo in ogni riserva.
+     */
+    private static final int POOL_SIZE = readPoolSize();
+
+    /**
+     * Numero massimo di insiemi di documenti di cui mantenere le domande.
+     */
+    private static final int MAX_DOCUMENT_SETS = 16;
+
+    /**
+     * Tipi di domanda che possono riguardare un singolo documento.
+     */
+    private static final List<Question.QuestionType> SINGLE_TYPES = List.of(
+            Question.QuestionType.ABSOLUTE_FREQUENCY,
+            Question.QuestionType.WHICH_MORE,
+            Question.QuestionType.WHICH_LESS
+    );
+
+    /**
+     * Tipi di domanda che richiedono almeno 4 documenti.
+     */
+    private static final List<Question.QuestionType> MULTI_DOCUMENT_TYPES = List.of(
+            Question.QuestionType.WHICH_DOCUMENT,
+            Question.QuestionType.WHICH_ABSENT
+    );
+
+    /**
+     * Riserva di domande pronte, per tipo.
+     */
+    private static class Pool {
+        private final Map<Question.QuestionType, Deque<Question>> questions = new EnumMap<>(Question.QuestionType.class);
+        private boolean refillScheduled;
+
+        private Pool(Collection<Question.QuestionType> types) {
+            for (var type : types) {
+                questions.put(type, new ArrayDeque<>());
+            }
+        }
+
+        private Question poll(Question.QuestionType type) {
+            return questions.get(type).pollFirst();
+        }
+
+        private boolean isFull() {
+            for (var pool : questions.values()) {
+                if (pool.size() < POOL_SIZE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Riserva delle domande su un insieme di documenti, con il relativo generatore.
+     */
+    private static class SetPool extends Pool {
+        private final List<Document> documents;
+        private final CompletableFuture<QuestionGenerator> generator = new CompletableFuture<>();
+
+        private SetPool(List<Document> documents) {
+            // Con meno di 4 documenti tutte le domande riguardano un singolo documento
+            super(documents.size() >= 4 ? EnumSet.allOf(Question.QuestionType.class) : List.of());
+            this.documents = List.copyOf(documents);
+        }
+    }
+
+    private final WdmDAO wdmDAO;
+    private final InvertedIndex documentIndex;
+    private final Map<Document, Pool> documentPools = new HashMap<>();
+    private final Map<Set<Document>, SetPool> setPools = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<Document>, SetPool> eldest) {
+            return size() > MAX_DOCUMENT_SETS;
+        }
+    };
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "question-bank");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random();
+
+    /**
+     * Costruisce una banca delle domande vuota.
+     *
+     * @param wdmDAO        DAO per le matrici parola-documento
+     * @param documentIndex indice invertito delle WDM della libreria
+     */
+    public QuestionBank(WdmDAO wdmDAO, InvertedIndex documentIndex) {
+        this.wdmDAO = wdmDAO;
+        this.documentIndex = documentIndex;
+    }
+
+    /**
+     * Avvia in background la preparazione delle domande per un insieme di documenti,
+     * così che siano pronte quando verranno richieste con {@link #draw(List, int)}.
+     *
+     * @param documents i documenti della partita
+     */
+    public void prepare(List<Document> documents) {
+        SetPool setPool = setPool(documents);
+        scheduleRefill(setPool);
+        for (Document document : documents) {
+            scheduleRefill(document, setPool);
+        }
+    }
+
+    /**
+     * Preleva le domande per una partita.
+     * <p>
+     * I tipi di domanda sono scelti casualmente; con meno di 4 documenti sono ammesse solo domande su un singolo
+     * documento, altrimenti anche {@link Question.QuestionType#WHICH_DOCUMENT} e {@link Question.QuestionType#WHICH_ABSENT}
+     * e, per gli altri tipi, domande sull'insieme dei documenti. Le domande vengono prelevate dalle riserve,
+     * che vengono poi riempite in background.
+     * </p>
+     *
+     * @param documents i documenti della partita
+     * @param count     il numero di domande
+     * @return le domande prelevate
+     * @throws IllegalStateException se la WDM di un documento non è disponibile
+     *                               o se i documenti non permettono di generare le domande
+     */
+    public List<Question> draw(List<Document> documents, int count) {
+        SetPool setPool = setPool(documents);
+        QuestionGenerator generator = generatorOf(setPool);
+
+        List<Question.QuestionType> allowedTypes = new ArrayList<>(SINGLE_TYPES);
+        boolean multiDocument = documents.size() >= 4;
+        // Con meno di 4 documenti le domande riguardano un singolo documento
+        if (multiDocument) {
+            allowedTypes.addAll(MULTI_DOCUMENT_TYPES);
+        }
+
+        List<Question> questions = new ArrayList<>(count);
+        Map<Document, Pool> usedPools = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            var type = allowedTypes.get(random.nextInt(allowedTypes.size()));
+            // Con almeno 4 documenti, i tipi che lo permettono riguardano a caso un documento o tutti
+            boolean single = SINGLE_TYPES.contains(type) && (!multiDocument || random.nextBoolean());
+            Question question;
+            if (single) {
+                Document document = documents.get(random.nextInt(documents.size()));
+                Pool pool = usedPools.computeIfAbsent(document, this::documentPool);
+                question = poll(pool, type);
+                if (question == null) {
+                    question = generator.generate(type, document);
+                }
+            } else {
+                question = poll(setPool, type);
+                if (question == null) {
+                    question = generator.generate(type);
+                }
+            }
+            questions.add(question);
+        }
+
+        scheduleRefill(setPool);
+        for (Document document : usedPools.keySet()) {
+            scheduleRefill(document, setPool);
+        }
+        return questions;
+    }
+
+    /**
+     * Invalida le domande che riguardano un documento, ad esempio perché la sua WDM è cambiata o è stato eliminato,
+     * e ne avvia la rigenerazione in background se il documento ha ancora una WDM.
+     *
+     * @param document il documento modificato o eliminato
+     */
+    public void invalidate(Document document) {
+        synchronized (this) {
+            documentPools.remove(document);
+            setPools.keySet().removeIf(set -> set.contains(document));
+        }
+        worker.execute(() -> refillDocuments(wdmDAO.selectBy(List.of(document))));
+    }
+
+    /**
+     * Invalida tutte le domande, ad esempio dopo una modifica delle stopword, e avvia in background
+     * la rigenerazione delle riserve dei documenti che ne avevano una.
+     */
+    public void invalidateAll() {
+        List<Document> documents;
+        synchronized (this) {
+            setPools.clear();
+            documents = new ArrayList<>(documentPools.keySet());
+            documentPools.clear();
+        }
+        if (!documents.isEmpty()) {
+            worker.execute(() -> refillDocuments(wdmDAO.selectBy(documents)));
+        }
+    }
+
+    /**
+     * Restituisce la riserva di un insieme di documenti, creandola se necessario;
+     * la creazione avvia in background il caricamento delle WDM e il calcolo degli aggregati.
+     *
+     * @param documents i documenti dell'insieme
+     * @return la riserva dell'insieme
+     */
+    private synchronized SetPool setPool(List<Document> documents) {
+        return setPools.computeIfAbsent(Set.copyOf(documents), _ -> {
+            SetPool pool = new SetPool(documents);
+            worker.execute(() -> completeGenerator(pool));
+            return pool;
+        });
+    }
+
+    /**
+     * Restituisce il generatore di un insieme di documenti. Se il worker non lo ha ancora costruito,
+     * perché occupato con altre riserve, viene costruito sul thread chiamante.
+     *
+     * @param pool la riserva dell'insieme
+     * @return il generatore
+     * @throws IllegalStateException se la WDM di un documento non è disponibile
+     */
+    private QuestionGenerator generatorOf(SetPool pool) {
+        if (!pool.generator.isDone()) {
+            completeGenerator(pool);
+        }
+        try {
+            return pool.generator.join();
+        } catch (CompletionException e) {
+            // La riserva non è utilizzabile: verrà ricreata alla prossima richiesta
+            synchronized (this) {
+                setPools.values().remove(pool);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void completeGenerator(SetPool pool) {
+        if (pool.generator.isDone()) {
+            return;
+        }
+        try {
+            pool.generator.complete(newGenerator(pool.documents));
+        } catch (RuntimeException e) {
+            pool.generator.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Restituisce la riserva di un documento, creandola se necessario.
+     *
+     * @param document il documento
+     * @return la riserva del documento
+     */
+    private synchronized Pool documentPool(Document document) {
+        return documentPools.computeIfAbsent(document, _ -> new Pool(SINGLE_TYPES));
+    }
+
+    private synchronized Question poll(Pool pool, Question.QuestionType type) {
+        return pool.poll(type);
+    }
+
+    /**
+     * Carica le WDM dei documenti e costruisce il relativo generatore di domande.
+     *
+     * @param documents i documenti
+     * @return il generatore
+     * @throws IllegalStateException se la WDM di un documento non è disponibile
+     */
+    private QuestionGenerator newGenerator(List<Document> documents) {
+        Map<String, WDM> byFilename = new HashMap<>();
+        for (WDM wdm : wdmDAO.selectBy(documents)) {
+            byFilename.put(wdm.getDocument().filename(), wdm);
+        }
+        Map<Document, WDM> wdmMap = new LinkedHashMap<>();
+        for (Document document : documents) {
+            WDM wdm = byFilename.get(document.filename());
+            if (wdm == null) {
+                throw new IllegalStateException("WDM not found for document: " + document.title());
+            }
+            wdmMap.put(document, wdm);
+        }
+        return new QuestionGenerator(wdmMap, this::loadedIndex);
+    }
+
+    private InvertedIndex loadedIndex() {
+        documentIndex.ensureLoaded(wdmDAO::selectAll);
+        return documentIndex;
+    }
+
+    /**
+     * Pianifica il riempimento della riserva di un insieme di documenti.
+     */
+    private void scheduleRefill(SetPool pool) {
+        if (markScheduled(pool)) {
+            worker.execute(() -> fill(pool, type -> generatorOf(pool).generate(type)));
+        }
+    }
+
+    /**
+     * Pianifica il riempimento della riserva di un documento, usando il generatore di un insieme che lo contiene.
+     */
+    private void scheduleRefill(Document document, SetPool setPool) {
+        Pool pool = documentPool(document);
+        if (markScheduled(pool)) {
+            worker.execute(() -> fill(pool, type -> generatorOf(setPool).generate(type, document)));
+        }
+    }
+
+    /**
+     * Riempie le riserve dei documenti indicati, con un generatore per ciascun documento.
+     *
+     * @param wdms le WDM dei documenti
+     */
+    private void refillDocuments(Collection<WDM> wdms) {
+        for (WDM wdm : wdms) {
+            Document document = wdm.getDocument();
+            Pool pool = documentPool(document);
+            if (markScheduled(pool)) {
+                var generator = new QuestionGenerator(Map.of(document, wdm), this::loadedIndex);
+                fill(pool, type -> generator.generate(type, document));
+            }
+        }
+    }
+
+    private synchronized boolean markScheduled(Pool pool) {
+        if (pool.refillScheduled || pool.isFull()) {
+            return false;
+        }
+        pool.refillScheduled = true;
+        return true;
+    }
+
+    /**
+     * Genera le domande mancanti di una riserva; in caso di errore la riserva resta parzialmente piena
+     * e le domande mancanti verranno generate al momento del prelievo.
+     *
+     * @param pool      la riserva da riempire
+     * @param generator genera una domanda del tipo indicato
+     */
+    private void fill(Pool pool, Function<Question.QuestionType, Question> generator) {
+        try {
+            for (var type : pool.questions.keySet()) {
+                while (true) {
+                    synchronized (this) {
+                        if (pool.questions.get(type).size() >= POOL_SIZE) {
+                            break;
+                        }
+                    }
+                    Question question = generator.apply(type);
+                    synchronized (this) {
+                        pool.questions.get(type).addLast(question);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            SystemLogger.log("Errore durante la generazione delle domande", e);
+        } finally {
+            synchronized (this) {
+                pool.refillScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Legge dalla configurazione il numero di domande da mantenere pronte per ciascun tipo.
+     *
+     * @return il numero di domande per tipo, 8 se non configurato o non valido
+     */
+    private static int readPoolSize() {
+        try {
+            int size = Integer.parseInt(Config.get(Config.Props.QUESTION_POOL_SIZE).trim());
+            return size > 0 ? size : 8;
+        } catch (RuntimeException e) {
+            return 8;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package it.unisa.diem.wordageddon_g16.services;
+
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.Question;
+import it.unisa.diem.wordageddon_g16.models.WDM;
+import it.unisa.diem.wordageddon_g16.utility.InvertedIndex;
+import it.unisa.diem.wordageddon_g16.utility.Resources;
+import it.unisa.diem.wordageddon_g16.utility.Sampling;
+import it.unisa.diem.wordageddon_g16.utility.TermDictionary;
+import it.unisa.diem.wordageddon_g16.utility.TermFrequencyMap;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Generatore delle domande su un insieme di documenti.
+ * <p>
+ * Mantiene le {@link WDM} dei documenti e i relativi {@link GameAggregates}, calcolati una sola volta alla costruzione,
+ * e genera su richiesta domande di un dato {@link Question.QuestionType}: sull'intero insieme di documenti
+ * con {@link #generate(Question.QuestionType)} o su uno solo di essi con {@link #generate(Question.QuestionType, Document)}.
+ * Può essere usato da più thread contemporaneamente.
+ * </p>
+ */
+class QuestionGenerator {
+    private final List<Document> documents;
+    private final Map<Document, WDM> wdmMap;
+    private final GameAggregates aggregates;
+    private final Supplier<InvertedIndex> documentIndex;
+    private static final Random random = new Random();
+
+    /**
+     * Costruisce un generatore per i documenti indicati.
+     *
+     * @param wdmMap        le WDM dei documenti, per documento, nell'ordine dei documenti
+     * @param documentIndex fornisce l'indice invertito aggiornato della libreria
+     */
+    QuestionGenerator(Map<Document, WDM> wdmMap, Supplier<InvertedIndex> documentIndex) {
+        this.documents = List.copyOf(wdmMap.keySet());
+        this.wdmMap = wdmMap;
+        this.documentIndex = documentIndex;
+        // Frequenze cumulative e ordinamenti calcolati una sola volta per tutte le domande
+        this.aggregates = new GameAggregates(wdmMap);
+    }
+
+    /**
+     * Restituisce i documenti del generatore.
+     *
+     * @return i documenti, nell'ordine in cui sono stati forniti
+     */
+    List<Document> documents() {
+        return documents;
+    }
+
+    /**
+     * Genera una domanda del tipo indicato sull'intero insieme di documenti.
+     *
+     * @param type il tipo di domanda
+     * @return la domanda generata
+     * @throws IllegalStateException se i documenti non permettono di generare la domanda
+     */
+    Question generate(Question.QuestionType type) {
+        return switch (type) {
+            case ABSOLUTE_FREQUENCY -> absoluteFrequencyQuestion();
+            case WHICH_MORE -> whichMoreQuestion();
+            case WHICH_LESS -> whichLessQuestion();
+            case WHICH_DOCUMENT -> whichDocumentQuestion();
+            case WHICH_ABSENT -> whichAbsentQuestion();
+        };
+    }
+
+    /**
+     * Genera una domanda del tipo indicato su un singolo documento.
+     *
+     * @param type     il tipo di domanda, tra {@code ABSOLUTE_FREQUENCY}, {@code WHICH_MORE} e {@code WHICH_LESS}
+     * @param document uno dei documenti del generatore
+     * @return la domanda generata
+     * @throws IllegalStateException se il tipo non riguarda un singolo documento
+     *                               o se il documento non permette di generare la domanda
+     */
+    Question generate(Question.QuestionType type, Document document) {
+        return switch (type) {
+            case ABSOLUTE_FREQUENCY -> absoluteFrequencyQuestionSingle(document);
+            case WHICH_MORE -> whichMoreQuestionSingle(document);
+            case WHICH_LESS -> whichLessQuestionSingle(document);
+            default -> throw new IllegalStateException("Tipo di domanda non supportato per un singolo documento: " + type);
+        };
+    }
+
+    /**
+     * Genera una domanda {@link Question} sulla frequenza assoluta di una parola in un singolo documento.
+     * <p>
+     * Recupera la {@link WDM} del documento indicato e sceglie una parola presente.
+     * Crea quattro opzioni numeriche plausibili e identifica quella corretta in base alla frequenza della parola nel documento.
+     * </p>
+     *
+     * @param document il documento su cui verte la domanda
+     * @return domanda a scelta multipla relativa alla frequenza di una parola in un singolo documento
+     */
+    private Question absoluteFrequencyQuestionSingle(Document document) {
+        TermFrequencyMap words = wdmMap.get(document).getWordFrequencies();
+
+        // Seleziona una parola casuale tra quelle presenti nel documento, per posizione nella sua matrice WDM
+        int chosen = random.nextInt(words.size());
+        String chosenWord = TermDictionary.shared().wordOf(words.termAt(chosen));
+        // frequenza della parola nella WDM
+        int correctFrequency = words.countAt(chosen);
+
+        // Genero 4 risposte plausibili (inclusa quella corretta) e le inserisco nel set
+        Set<Integer> options = new HashSet<>();
+        options.add(correctFrequency);
+
+        Random rand = new Random();
+        while (options.size() < 4) {
+
+            int delta = 1 + rand.nextInt(4); // Delta tra 1 e 4
+
+            // Genera un'opzione casuale vicina al valore corretto
+            // Aggiunge o sottrae casualmente il delta alla frequenza corretta per generare un'opzione falsa
+            int fakeOption = correctFrequency + (rand.nextBoolean() ? delta : -delta);
+
+            if (fakeOption >= 0 && fakeOption != correctFrequency) {
+                options.add(fakeOption);
+            }
+        }
+
+        // Prepara la lista delle risposte e trova l'indice corretto
+        List<Integer> answerOptions = new ArrayList<>(options);
+        Collections.shuffle(answerOptions);
+
+        int correctIndex = answerOptions.indexOf(correctFrequency);
+
+        // Converte le risposte in stringhe
+        List<String> answers = answerOptions.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+
+        // Crea la domanda
+        return Question.create(
+                "Quante volte la parola \"" + chosenWord.toUpperCase() + "\" appare nel documento \"" + document.title().toUpperCase() + "\"?",
+                answers,
+                correctIndex
+        );
+    }
+
+    /**
+     * Genera una domanda {@link Question} sulla frequenza assoluta di una parola in tutti i documenti combinati.
+     * <p>
+     * Usa le frequenze cumulative di tutte le parole dei documenti, calcolate una sola volta per partita in {@link GameAggregates}.
+     * Seleziona una parola casuale e genera opzioni di risposta basate sulla sua frequenza cumulata.
+     * </p>
+     *
+     * @return domanda relativa alla frequenza di una parola aggregata su tutti i documenti
+     * @throws IllegalStateException se non ci sono parole disponibili nei documenti
+     */
+    private Question absoluteFrequencyQuestion() {
+        // Mappa cumulativa delle frequenze per tutte le parole in tutti i documenti
+        TermFrequencyMap cumulativeFrequency = aggregates.merged();
+
+        // Se non ci sono parole, lancia eccezione
+        if (cumulativeFrequency.isEmpty()) {
+            throw new IllegalStateException("Non ci sono parole nei documenti");
+        }
+
+        // Seleziona una parola casuale tra quelle presenti
+        int chosen = random.nextInt(cumulativeFrequency.size());
+        String chosenWord = TermDictionary.shared().wordOf(cumulativeFrequency.termAt(chosen));
+        int correctFrequency = cumulativeFrequency.countAt(chosen);
+
+        // Genera risposte plausibili (inclusa quella corretta)
+        Set<Integer> options = new HashSet<>();
+        options.add(correctFrequency);
+        Random rand = new Random();
+        while (options.size() < 4) {
+            // Genera un'opzione casuale vicina al valore corretto
+            int delta = 1 + rand.nextInt(Math.max(1, correctFrequency / 2 + 2));
+            int fakeOption = rand.nextBoolean() ? correctFrequency + delta : Math.max(0, correctFrequency - delta);
+            options.add(fakeOption);
+        }
+
+        // Prepara la lista delle risposte e trova l'indice corretto
+        List<Integer> answerOptions = new ArrayList<>(options);
+        Collections.shuffle(answerOptions);
+        int correctIndex = answerOptions.indexOf(correctFrequency);
+
+        // Converte le risposte in stringhe
+        List<String> answers = answerOptions.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+
+        // Crea la domanda
+        return Question.create(
+                "Quante volte la parola \"" + chosenWord.toUpperCase() + "\" appare in tutti i documenti?",
+                answers,
+                correctIndex
+        );
+    }
+
+    /**
+     * Genera una domanda {@link Question} in cui si chiede quale parola appare più frequentemente tra un insieme proposto, basata su tutti i documenti.
+     * <p>
+     * Usa i termini ordinati per frequenza cumulativa di {@link GameAggregates} per scegliere quattro parole
+     * tra cui una sola ha la frequenza più alta, che costituisce la risposta corretta.
+     * </p>
+     *
+     * @return domanda a scelta multipla sulla parola con frequenza massima complessiva
+     * @throws IllegalStateException se il numero di parole disponibili è inferiore a 4
+     */
+    private Question whichMoreQuestion() {
+        return extremeFrequencyQuestion(aggregates.mergedByFrequency(), true,
+                "Quale di queste parole appare più frequentemente in tutti i documenti?");
+    }
+
+    /**
+     * Genera una domanda {@link Question} in cui si chiede quale parola appare più frequentemente in un singolo documento.
+     * <p>
+     * Sceglie quattro parole tra i termini del {@link Document} indicato, ordinati per frequenza.
+     * La parola con frequenza più alta, unica tra le quattro, è la risposta corretta.
+     * </p>
+     *
+     * @param document il documento su cui verte la domanda
+     * @return una Question a scelta multipla relativa alla parola più frequente nel documento selezionato
+     */
+    private Question whichMoreQuestionSingle(Document document) {
+        return extremeFrequencyQuestion(aggregates.byFrequency(document), true,
+                "Quale di queste parole appare più frequentemente nel documento \"" + document.title().toUpperCase() + "\"?");
+    }
+
+    /**
+     * Genera una domanda {@link Question} in cui si chiede quale parola appare meno frequentemente in un singolo documento.
+     * <p>
+     * Sceglie quattro parole tra i termini del {@link Document} indicato, ordinati per frequenza.
+     * La parola con frequenza più bassa, unica tra le quattro, è la risposta corretta.
+     * </p>
+     *
+     * @param document il documento su cui verte la domanda
+     * @return domanda sulla parola con minore frequenza in un documento specifico
+     */
+    private Question whichLessQuestionSingle(Document document) {
+        return extremeFrequencyQuestion(aggregates.byFrequency(document), false,
+                "Quale delle seguenti parole appare meno frequentemente nel documento \"" + document.title().toUpperCase() + "\"?");
+    }
+
+    /**
+     * Genera una domanda {@link Question} che richiede di identificare la parola meno frequente
+     * tra un insieme di quattro, basata sui dati cumulativi di tutti i documenti.
+     * <p>
+     * Usa i termini ordinati per frequenza cumulativa di {@link GameAggregates}, calcolati una sola volta per partita,
+     * per sceglierne quattro e individuare quella con la frequenza più bassa.
+     * </p>
+     *
+     * @return domanda a scelta multipla sulla parola con minore frequenza globale
+     * @throws IllegalStateException se non sono disponibili abbastanza dati per la generazione
+     */
+    private Question whichLessQuestion() {
+        return extremeFrequencyQuestion(aggregates.mergedByFrequency(), false,
+                "Quale di queste parole appare meno frequentemente in tutti i documenti?");
+    }
+
+    /**
+     * Genera una domanda a scelta multipla su quale tra quattro parole appare più (o meno) frequentemente.
+     *
+     * @param frequencies termini ordinati per frequenza tra cui scegliere le opzioni
+     * @param most        {@code true} se la risposta corretta è la parola più frequente, {@code false} se la meno frequente
+     * @param text        testo della domanda
+     * @return la domanda generata
+     * @throws IllegalStateException se il numero di parole disponibili è inferiore a 4
+     */
+    private Question extremeFrequencyQuestion(GameAggregates.SortedFrequencies frequencies, boolean most, String text) {
+        int[] ranks = pickExtremeOptions(frequencies, most);
+        int correctRank = ranks[0];
+
+        List<Integer> options = new ArrayList<>(List.of(ranks[0], ranks[1], ranks[2], ranks[3]));
+        Collections.shuffle(options);
+
+        List<String> answers = new ArrayList<>();
+        for (int rank : options) {
+            answers.add(frequencies.wordAt(rank));
+        }
+        return Question.create(text, answers, options.indexOf(correctRank));
+    }
+
+    /**
+     * Sceglie i ranghi delle quattro opzioni di una domanda sulla parola più (o meno) frequente.
+     * <p>
+     * La risposta corretta viene scelta tra i termini che hanno almeno tre termini con frequenza strettamente minore
+     * (o maggiore), e le tre opzioni errate tra questi ultimi, così che la risposta corretta sia unica.
+     * Se le frequenze non lo permettono (ad esempio sono tutte uguali), le quattro opzioni sono estratte a caso
+     * e la risposta corretta è quella di rango estremo.
+     * </p>
+     *
+     * @param frequencies termini ordinati per frequenza
+     * @param most        {@code true} se la risposta corretta è la parola più frequente
+     * @return i ranghi delle quattro opzioni, con la risposta corretta in prima posizione
+     * @throws IllegalStateException se il numero di parole disponibili è inferiore a 4
+     */
+    private int[] pickExtremeOptions(GameAggregates.SortedFrequencies frequencies, boolean most) {
+        int size = frequencies.size();
+        if (size < 4) {
+            throw new IllegalStateException("Non ci sono abbastanza parole per generare la domanda (minimo 4 richieste)");
+        }
+        int correct = -1;
+        int from = 0;
+        int to = 0;
+        if (most) {
+            // Termini con frequenza maggiore di almeno tre altri
+            int first = frequencies.firstRankAbove(frequencies.countAt(2));
+            if (first < size) {
+                correct = first + random.nextInt(size - first);
+                to = frequencies.firstRankAtLeast(frequencies.countAt(correct));
+            }
+        } else {
+            // Termini con frequenza minore di almeno tre altri
+            int last = frequencies.firstRankAtLeast(frequencies.countAt(size - 3));
+            if (last > 0) {
+                correct = random.nextInt(last);
+                from = frequencies.firstRankAbove(frequencies.countAt(correct));
+                to = size;
+            }
+        }
+
+        if (correct < 0) {
+            int[] ranks = Sampling.distinctIndices(0, size, 4, random);
+            Arrays.sort(ranks);
+            int extreme = most ? ranks[3] : ranks[0];
+            return new int[]{extreme, most ? ranks[0] : ranks[3], ranks[1], ranks[2]};
+        }
+        int[] wrong = Sampling.distinctIndices(from, to, 3, random);
+        return new int[]{correct, wrong[0], wrong[1], wrong[2]};
+    }
+
+    /**
+     * Genera una domanda {@link Question} che richiede di identificare
+     * in quale documento appare una determinata parola.
+     * <p>
+     * Seleziona un {@link Document} casuale e una parola presente al suo interno, preferendo quelle che compaiono
+     * solo in quel documento. Le opzioni errate sono scelte, tramite l'{@link InvertedIndex}, tra i documenti della partita
+     * che non contengono la parola; le opzioni sono poi disposte in ordine casuale.
+     * </p>
+     *
+     * @return domanda sulla presenza di una parola in uno dei documenti disponibili
+     * @throws IllegalStateException se il documento selezionato non contiene parole
+     */
+    private Question whichDocumentQuestion() {
+        List<Document> docs = documents;
+        Document document = docs.get(random.nextInt(docs.size()));
+        TermFrequencyMap words = wdmMap.get(document).getWordFrequencies();
+        if (words.isEmpty()) throw new IllegalStateException("No words available");
+
+        InvertedIndex libraryIndex = documentIndex.get();
+        int[] uniqueTerms = libraryIndex.termsUniqueTo(document);
+        int wrongNeeded = Math.min(3, docs.size() - 1);
+
+        // Cerca una parola per cui esistano abbastanza documenti che non la contengono
+        int term = -1;
+        List<Document> docPool = new ArrayList<>();
+        for (int attempt = 0; attempt < 10 && docPool.size() < wrongNeeded; attempt++) {
+            term = uniqueTerms.length > 0
+                    ? uniqueTerms[random.nextInt(uniqueTerms.length)]
+                    : words.termAt(random.nextInt(words.size()));
+            Set<Document> containing = new HashSet<>(libraryIndex.documentsContaining(term));
+            docPool.clear();
+            for (Document d : docs) {
+                if (!containing.contains(d)) {
+                    docPool.add(d);
+                }
+            }
+        }
+        String word = TermDictionary.shared().wordOf(term);
+        docPool = Sampling.sample(docPool, Math.min(wrongNeeded, docPool.size()), random);
+
+        // Se la parola è presente in troppi documenti, si completano le opzioni con gli altri documenti
+        for (Document d : docs) {
+            if (docPool.size() >= wrongNeeded) break;
+            if (!d.equals(document) && !docPool.contains(d)) docPool.add(d);
+        }
+
+        // Il documento corretto e fino a 3 documenti diversi
+        List<Document> docAnswer = new ArrayList<>();
+        docAnswer.add(document);
+        for (Document d : docPool) {
+            if (docAnswer.size() < 4) {
+                docAnswer.add(d);
+            }
+        }
+
+        Collections.shuffle(docAnswer);
+
+        List<String> answers = new ArrayList<>();
+        int index = -1;
+        for (int i = 0; i < docAnswer.size(); i++) {
+            Document d = docAnswer.get(i);
+            answers.add(d.title());
+            if (d.equals(document)) {
+                index = i;
+            }
+        }
+        return Question.create(
+                "In quale di questi documenti appare la parola " + word.toUpperCase() + "?",
+                answers,
+                index
+        );
+    }
+    /**
+     * Genera una domanda {@link Question} che richiede di identificare
+     * quale parola tra quattro non è presente in nessun documento.
+     * <p>
+     * Estrae tre parole distinte dalle {@link WDM} di documenti casuali della partita, senza costruire l'insieme di tutte
+     * le parole, e ne genera una quarta che non compare in alcun documento, utilizzando {@code generateAbsentWord()}.
+     * </p>
+     *
+     * @return domanda che verifica l'assenza totale di una parola nei documenti
+     * @throws IllegalStateException se non ci sono abbastanza parole per generare la domanda
+     */
+    private Question whichAbsentQuestion() {
+        List<Document> docs = documents;
+        Set<Integer> presentTerms = new LinkedHashSet<>();
+        for (int attempt = 0; attempt < 100 && presentTerms.size() < 3; attempt++) {
+            TermFrequencyMap words = wdmMap.get(docs.get(random.nextInt(docs.size()))).getWordFrequencies();
+            if (!words.isEmpty()) {
+                presentTerms.add(words.termAt(random.nextInt(words.size())));
+            }
+        }
+        if (presentTerms.size() < 3) {
+            throw new IllegalStateException("Not enough words for the question");
+        }
+
+        List<String> answers = new ArrayList<>();
+        for (int term : presentTerms) {
+            answers.add(TermDictionary.shared().wordOf(term));
+        }
+
+        // Genera una parola assente in modo robusto
+        String absentWord = generateAbsentWord();
+
+        answers.add(absentWord);
+
+        // Mischia le risposte e individua l'indice corretto
+        Collections.shuffle(answers);
+        int correctIndex = answers.indexOf(absentWord);
+
+        return Question.create(
+                "Quale delle seguenti parole NON è presente in nessun documento?",
+                answers,
+                correctIndex
+        );
+    }
+
+    /**
+     * Genera una parola che non è presente in alcuno dei documenti selezionati per la partita.
+     * Il metodo tenta di prelevare una parola da:
+     * <ul>
+     *   <li>Documenti inutilizzati: tramite l'{@link InvertedIndex} della libreria estrae una parola di un documento
+     *   non usato che non compare in nessun documento della partita.</li>
+     *   <li>Vocabolario statico: se non ci sono documenti inutilizzati o nessuna parola valida, seleziona una parola casuale da {@link Resources#getVocabulary()}.</li>
+     * </ul>
+     * Se non trova alcuna parola valida, lancia una {@link IllegalStateException}.
+     *
+     * @return una parola assente da tutti i documenti utilizzati
+     * @throws IllegalStateException se non ci sono parole disponibili né nei documenti inutilizzati né nel vocabolario statico
+     */
+    private String generateAbsentWord() {
+        List<Document> usedDocs = documents;
+        InvertedIndex index = documentIndex.get();
+        TermDictionary dictionary = TermDictionary.shared();
+
+        String word;
+        int term = index.randomTermAbsentFrom(usedDocs, random);
+        if (term >= 0) {
+            word = dictionary.wordOf(term);
+        } else {
+            // Nessuna parola disponibile nei documenti inutilizzati: prelevo una parola dal vocabolario statico in un'unica passata, senza copiarlo
+            word = Sampling.sampleMatching(Resources.getVocabulary(), w -> {
+                int id = dictionary.find(w);
+                return id < 0 || !index.containsAny(id, usedDocs);
+            }, random);
+            if (word == null) {
+                throw new IllegalStateException("Nessuna parola disponibile nel vocabolario statico!");
+            }
+        }
+
+        return word;
+
+    }
+}
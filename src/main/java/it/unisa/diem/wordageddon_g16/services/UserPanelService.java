@@ -5,7 +5,10 @@ import it.unisa.diem.wordageddon_g16.db.JDBCUserDAO;
 import it.unisa.diem.wordageddon_g16.db.JDBCWdmDAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.DocumentDAO;
 import it.unisa.diem.wordageddon_g16.db.contracts.GameReportDAO;
+import it.unisa.diem.wordageddon_g16.db.contracts.TermHistogramDAO;
 import it.unisa.diem.wordageddon_g16.models.*;
+import it.unisa.diem.wordageddon_g16.utility.InvertedIndex;
+import it.unisa.diem.wordageddon_g16.utility.WordCountIndex;
 import it.unisa.diem.wordageddon_g16.utility.Resources;
 import it.unisa.diem.wordageddon_g16.utility.SystemLogger;
 
@@ -29,73 +32,127 @@ public class UserPanelService {
     private final JDBCStopWordDAO stopWordDAO;
     private final AppContext appContext;
     private final JDBCWdmDAO wdmDAO;
+    private final TermHistogramDAO histogramDAO;
+    private final InvertedIndex documentIndex;
+    private final QuestionBank questionBank;
+    private final WordCountIndex wordCountIndex;
 
     /**
      * Costruttore del {@code UserPanelService}.
      *
-     * @param gameReportDAO DAO per i report di gioco
-     * @param userDAO       DAO per gli utenti
-     * @param documentDAO   DAO per i documenti
-     * @param stopWordDAO   DAO per le stopword
-     * @param appContext    Contesto applicativo
+     * @param gameReportDAO  DAO per i report di gioco
+     * @param userDAO        DAO per gli utenti
+     * @param documentDAO    DAO per i documenti
+     * @param stopWordDAO    DAO per le stopword
+     * @param wdmDAO         DAO per le matrici parola-documento
+     * @param histogramDAO   DAO per gli istogrammi dei termini dei documenti
+     * @param documentIndex  indice invertito della libreria, aggiornato a ogni modifica delle WDM
+     * @param questionBank   banca delle domande pre-generate, invalidata a ogni modifica delle WDM
+     * @param wordCountIndex indice dei documenti per numero di parole, aggiornato a ogni modifica dei documenti
+     * @param appContext     Contesto applicativo
      */
-    public UserPanelService(GameReportDAO gameReportDAO, JDBCUserDAO userDAO, DocumentDAO documentDAO, JDBCStopWordDAO stopWordDAO, JDBCWdmDAO wdmDAO, AppContext appContext) {
+    public UserPanelService(GameReportDAO gameReportDAO, JDBCUserDAO userDAO, DocumentDAO documentDAO, JDBCStopWordDAO stopWordDAO, JDBCWdmDAO wdmDAO, TermHistogramDAO histogramDAO, InvertedIndex documentIndex, QuestionBank questionBank, WordCountIndex wordCountIndex, AppContext appContext) {
         this.gameReportDAO = gameReportDAO;
         this.userDAO = userDAO;
         this.documentDAO = documentDAO;
         this.stopWordDAO = stopWordDAO;
         this.appContext = appContext;
         this.wdmDAO = wdmDAO;
+        this.histogramDAO = histogramDAO;
+        this.documentIndex = documentIndex;
+        this.questionBank = questionBank;
+        this.wordCountIndex = wordCountIndex;
+    }
+
+    /**
+     * Calcola e salva la WDM di un documento, escludendo le stopword correnti.
+     * <p>
+     * Se per il documento è già salvato un {@link TermHistogram}, la WDM viene derivata da esso senza rileggere il file;
+     * altrimenti il file viene analizzato e l'istogramma viene salvato insieme alla WDM tramite {@link #updateWDM(WDM)}.
+     *
+     * @param document il documento da analizzare, con il titolo da salvare
+     * @return il numero di righe della WDM modificate
+     */
+    public int analyzeDocument(Document document) {
+        TermHistogram histogram = histogramDAO.selectBy(document)
+                .map(stored -> new TermHistogram(document, stored.frequencies(), stored.tokenCount()))
+                .orElseGet(() -> TermHistogram.of(document));
+        return updateWDM(new WDM(histogram, getStopwords()));
     }
 
     /**
      * Inserisce o aggiorna una WDM nel database.
-     * Se il documento associato esiste già, aggiorna la WDM eliminando la precedente.
+     * Se il documento associato esiste già, ne aggiorna i dati e modifica solo le righe della WDM che sono cambiate.
+     * Documento e WDM vengono salvati in un'unica transazione; gli indici in memoria vengono aggiornati solo dopo
+     * la conferma, per cui in caso di errore restano allineati al database.
      *
      * @param wdm la matrice parola-documento da salvare
+     * @return il numero di righe della WDM modificate
      */
-    public void updateWDM(WDM wdm) {
-        // Controllo se il documento è già presente
-        if (wdmDAO.selectBy(wdm.getDocument()).isPresent()) {
-            System.out.println("Aggiornamento del documento e della WDM associata: " + wdm.getDocument().filename());
-            documentDAO.update(wdm.getDocument());
-            // aggiorno la matrica WDM
-            wdmDAO.update(wdm);
-        }
-        else {
-            // Inserisco il documento nel database
-            documentDAO.insert(wdm.getDocument());
-            // Inserisco la matrice WDM
-            wdmDAO.insert(wdm);
-        }
+    public int updateWDM(WDM wdm) {
+        Document document = wdm.getDocument();
+        int changedRows = wdmDAO.merge(wdm);
+        wordCountIndex.put(document);
+        documentIndex.put(wdm);
+        questionBank.invalidate(document);
+        return changedRows;
     }
 
     /**
-     * Recupera tutti i report di gioco dell'utente attualmente loggato.
+     * Restituisce i documenti la cui WDM va ricalcolata rileggendone il contenuto dopo una modifica delle stopword.
+     * <p>
+     * Le modifiche delle stopword vengono applicate direttamente alle WDM salvate; fanno eccezione i documenti
+     * caricati prima che venissero salvati gli istogrammi dei termini, che vanno ricalcolati una sola volta.
      *
-     * @return {@code List<GameReport>} lista di report
+     * @return {@code List<Document>} documenti da ricalcolare
      */
-    public List<GameReport> getCurrentUserReports() {
-        return gameReportDAO.selectAll().stream()
-                .filter(r -> r.user().getName().equals(appContext.getCurrentUser().getName()))
-                .toList();
+    public List<Document> getDocumentsToRecalculate() {
+        return histogramDAO.selectDocumentsWithoutHistogram();
+    }
+
+    /**
+     * Recupera una pagina dei riepiloghi dei report di gioco dell'utente attualmente loggato, dal più recente.
+     * <p>
+     * Vengono letti solo i report dell'utente, tramite l'indice su utente e timestamp, e senza i documenti,
+     * che si ottengono su richiesta con {@link #getReportDocuments(GameReportSummary)}.
+     * Per leggere la pagina successiva si passa come {@code after} l'ultimo riepilogo ricevuto.
+     *
+     * @param after ultimo riepilogo della pagina precedente, {@code null} per la prima pagina
+     * @param limit numero massimo di riepiloghi della pagina
+     * @return {@code List<GameReportSummary>} i riepiloghi della pagina
+     */
+    public List<GameReportSummary> getCurrentUserReports(GameReportSummary after, int limit) {
+        return gameReportDAO.selectSummariesByUser(appContext.getCurrentUser(), after, limit);
+    }
+
+    /**
+     * Recupera i documenti di un report, quando il report viene aperto.
+     *
+     * @param summary il riepilogo del report
+     * @return {@code List<Document>} i documenti della partita
+     */
+    public List<Document> getReportDocuments(GameReportSummary summary) {
+        return gameReportDAO.selectDocuments(summary);
     }
 
     /**
      * Restituisce le statistiche (punteggio massimo, medio, numero totale) dell'utente corrente.
+     * <p>
+     * Le statistiche sono lette dalla tabella {@code UserStats}, con al più una riga per difficoltà,
+     * senza scorrere i report dell'utente.
      *
      * @return {@code Map<String, Object>}
      */
     public Map<String, Object> getUserStatsForCurrentUser() {
-        List<GameReport> reports = getCurrentUserReports();
-
-        int max = reports.stream().mapToInt(GameReport::score)
-                .max().orElse(0);
-
-        double average = reports.stream().mapToInt(GameReport::score)
-                .average().orElse(0.0);
-
-        int total = reports.size();
+        int max = 0;
+        int totalScore = 0;
+        int total = 0;
+        for (UserStats difficultyStats : gameReportDAO.selectStats(appContext.getCurrentUser())) {
+            max = Math.max(max, difficultyStats.maxScore());
+            totalScore += difficultyStats.totalScore();
+            total += difficultyStats.gamesPlayed();
+        }
+        double average = total > 0 ? (double) totalScore / total : 0.0;
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("maxScore", max);
@@ -157,6 +214,10 @@ public class UserPanelService {
         for (String stopWord : stopWordsSet) {
             stopWordDAO.insert(stopWord);
         }
+        // Le WDM di tutti i documenti possono essere cambiate: l'indice verrà ricaricato e le domande rigenerate
+        documentIndex.invalidate();
+        questionBank.invalidateAll();
+        wordCountIndex.invalidate();
     }
 
     /**
@@ -224,6 +285,9 @@ public class UserPanelService {
      */
     public void deleteDocument(Document doc) {
         documentDAO.delete(doc);
+        documentIndex.remove(doc);
+        wordCountIndex.remove(doc);
+        questionBank.invalidate(doc);
 
         // Se il documento non è più presente nel database, elimino il file fisico
         if (documentDAO.selectBy(doc.filename()).isEmpty()) {
@@ -258,6 +322,9 @@ public class UserPanelService {
         for (String stopWord : stopWordsSet) {
             stopWordDAO.insert(stopWord);
         }
+        documentIndex.invalidate();
+        questionBank.invalidateAll();
+        wordCountIndex.invalidate();
     }
 
     /**
@@ -267,6 +334,9 @@ public class UserPanelService {
      */
     public void deleteStopword(String word) {
         stopWordDAO.delete(word);
+        documentIndex.invalidate();
+        questionBank.invalidateAll();
+        wordCountIndex.invalidate();
     }
 
     /**
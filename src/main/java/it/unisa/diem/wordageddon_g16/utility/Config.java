@@ -28,6 +28,7 @@ public class Config {
      *   <li>{@code SESSION_FILE} → percorso file sessione</li>
      *   <li>{@code INTERRUPTED_SESSION_FILE} → percorso file sessione interrotta</li>
      *   <li>{@code DOCUMENTS_DIR} → directory contenente i documenti del gioco</li>
+     *   <li>{@code DB_BATCH_SIZE} → numero di righe per blocco negli inserimenti massivi</li>
      * </ul>
      */
     public enum Props {
@@ -36,7 +37,12 @@ public class Config {
         USR_CHAR_MAX_LENGTH("auth.char_max_length"),
         SESSION_FILE("session.url"),
         INTERRUPTED_SESSION_FILE("interruptedSession.url"),
-        DOCUMENTS_DIR("docs.dir");
+        DOCUMENTS_DIR("docs.dir"),
+        DB_BATCH_SIZE("db.batch_size"),
+        DB_STATEMENT_CACHE_SIZE("db.statement_cache_size"),
+        DB_READ_CONNECTIONS("db.read_connections"),
+        QUESTION_POOL_SIZE("question_bank.pool_size"),
+        LEADERBOARD_PAGE_SIZE("leaderboard.page_size");
 
         private final String key;
 
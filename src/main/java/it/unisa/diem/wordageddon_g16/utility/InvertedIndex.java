@@ -0,0 +1,300 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import it.unisa.diem.wordageddon_g16.models.Document;
+import it.unisa.diem.wordageddon_g16.models.WDM;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Indice invertito termine → documenti delle {@link WDM} dell'intera libreria.
+ * <p>
+ * Per ogni termine del {@link TermDictionary} mantiene una lista di posting, ossia i documenti che lo contengono
+ * con il relativo numero di occorrenze. Permette di rispondere senza scorrere le WDM a domande come
+ * "quali documenti contengono la parola", "quali parole non compaiono in nessuno di questi documenti"
+ * e "quali parole compaiono solo in questo documento".
+ * </p>
+ * <p>
+ * L'indice viene caricato alla prima richiesta tramite {@link #ensureLoaded(Supplier)} e mantenuto aggiornato con
+ * {@link #put(WDM)} e {@link #remove(Document)}; le modifiche che interessano più documenti insieme (ad esempio
+ * quelle delle stopword) lo invalidano con {@link #invalidate()}, così che venga ricaricato alla richiesta successiva.
+ * Sul database lo stesso ruolo è svolto dall'indice {@code WDM_term} sulla tabella {@code WDM}.
+ * </p>
+ * <p>
+ * La classe è thread-safe.
+ * </p>
+ */
+public class InvertedIndex {
+    /**
+     * Documenti indicizzati, per posizione; le posizioni dei documenti rimossi valgono {@code null}.
+     */
+    private final List<Document> documents = new ArrayList<>();
+
+    /**
+     * Frequenze dei termini di ciascun documento, allineate a {@link #documents}.
+     */
+    private final List<TermFrequencyMap> documentTerms = new ArrayList<>();
+
+    /**
+     * Posizione di ciascun documento, per nome file.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Posizioni libere lasciate dai documenti rimossi.
+     */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * Liste di posting indicizzate per id del termine: posizione del documento → occorrenze.
+     */
+    private TermFrequencyMap[] postings = new TermFrequencyMap[1024];
+
+    /**
+     * Indica se l'indice rispecchia le WDM salvate.
+     */
+    private boolean loaded;
+
+    /**
+     * Carica l'indice con le WDM fornite, se non è già caricato.
+     *
+     * @param loader fornisce tutte le WDM della libreria
+     */
+    public synchronized void ensureLoaded(Supplier<? extends Collection<WDM>> loader) {
+        if (loaded) {
+            return;
+        }
+        clear();
+        for (WDM wdm : loader.get()) {
+            index(wdm);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Invalida l'indice: verrà ricaricato alla prossima invocazione di {@link #ensureLoaded(Supplier)}.
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        clear();
+    }
+
+    /**
+     * Inserisce o sostituisce una WDM nell'indice. Se l'indice non è caricato l'operazione viene ignorata,
+     * perché la WDM verrà letta al caricamento.
+     *
+     * @param wdm la WDM da indicizzare
+     */
+    public synchronized void put(WDM wdm) {
+        if (loaded) {
+            unindex(wdm.getDocument().filename());
+            index(wdm);
+        }
+    }
+
+    /**
+     * Rimuove un documento dall'indice.
+     *
+     * @param document il documento da rimuovere
+     */
+    public synchronized void remove(Document document) {
+        if (loaded) {
+            unindex(document.filename());
+        }
+    }
+
+    /**
+     * Restituisce i documenti che contengono un termine.
+     *
+     * @param term id del termine
+     * @return documenti che contengono il termine, in ordine non specificato
+     */
+    public synchronized List<Document> documentsContaining(int term) {
+        TermFrequencyMap posting = posting(term);
+        if (posting == null) {
+            return List.of();
+        }
+        var result = new ArrayList<Document>(posting.size());
+        for (int i = 0; i < posting.size(); i++) {
+            result.add(documents.get(posting.termAt(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero di documenti che contengono un termine.
+     *
+     * @param term id del termine
+     * @return numero di documenti
+     */
+    public synchronized int documentFrequency(int term) {
+        TermFrequencyMap posting = posting(term);
+        return posting == null ? 0 : posting.size();
+    }
+
+    /**
+     * Restituisce le occorrenze di un termine in un documento.
+     *
+     * @param term     id del termine
+     * @param document il documento
+     * @return numero di occorrenze, 0 se il termine o il documento non sono presenti
+     */
+    public synchronized int frequency(int term, Document document) {
+        TermFrequencyMap posting = posting(term);
+        Integer slot = slots.get(document.filename());
+        return posting == null || slot == null ? 0 : posting.get(slot);
+    }
+
+    /**
+     * Verifica se un termine compare in almeno uno dei documenti indicati.
+     *
+     * @param term      id del termine
+     * @param documents documenti in cui cercare
+     * @return {@code true} se almeno un documento contiene il termine
+     */
+    public synchronized boolean containsAny(int term, Collection<Document> documents) {
+        TermFrequencyMap posting = posting(term);
+        if (posting == null) {
+            return false;
+        }
+        for (Document document : documents) {
+            Integer slot = slots.get(document.filename());
+            if (slot != null && posting.contains(slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce i termini che compaiono solo nel documento indicato.
+     *
+     * @param document il documento
+     * @return id dei termini presenti in nessun altro documento della libreria
+     */
+    public synchronized int[] termsUniqueTo(Document document) {
+        Integer slot = slots.get(document.filename());
+        if (slot == null) {
+            return new int[0];
+        }
+        TermFrequencyMap terms = documentTerms.get(slot);
+        int[] result = new int[terms.size()];
+        int count = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            if (postings[terms.termAt(i)].size() == 1) {
+                result[count++] = terms.termAt(i);
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Estrae casualmente un termine della libreria che non compare in nessuno dei documenti indicati.
+     * <p>
+     * I documenti esclusi vengono visitati in ordine casuale e, per ciascuno, i termini vengono scorsi a partire
+     * da una posizione casuale fino a trovarne uno assente dai documenti indicati.
+     *
+     * @param excluded documenti in cui il termine non deve comparire
+     * @param random   generatore di numeri casuali
+     * @return id del termine, oppure -1 se tutti i termini della libreria compaiono nei documenti indicati
+     */
+    public synchronized int randomTermAbsentFrom(Collection<Document> excluded, Random random) {
+        BitSet excludedSlots = new BitSet();
+        for (Document document : excluded) {
+            Integer slot = slots.get(document.filename());
+            if (slot != null) {
+                excludedSlots.set(slot);
+            }
+        }
+        int[] candidates = new int[documents.size()];
+        int count = 0;
+        for (int slot = 0; slot < documents.size(); slot++) {
+            if (documents.get(slot) != null && !excludedSlots.get(slot)) {
+                candidates[count++] = slot;
+            }
+        }
+        // Fisher-Yates parziale sui documenti candidati
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(count - i);
+            int slot = candidates[j];
+            candidates[j] = candidates[i];
+            candidates[i] = slot;
+
+            TermFrequencyMap terms = documentTerms.get(slot);
+            int size = terms.size();
+            int start = size == 0 ? 0 : random.nextInt(size);
+            for (int k = 0; k < size; k++) {
+                int term = terms.termAt((start + k) % size);
+                if (!appearsIn(term, excludedSlots)) {
+                    return term;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean appearsIn(int term, BitSet slotSet) {
+        TermFrequencyMap posting = postings[term];
+        for (int i = 0; i < posting.size(); i++) {
+            if (slotSet.get(posting.termAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TermFrequencyMap posting(int term) {
+        if (term < 0 || term >= postings.length || postings[term] == null || postings[term].isEmpty()) {
+            return null;
+        }
+        return postings[term];
+    }
+
+    private void index(WDM wdm) {
+        Document document = wdm.getDocument();
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = documents.size();
+            documents.add(document);
+            documentTerms.add(null);
+        } else {
+            slot = freeSlots.pop();
+            documents.set(slot, document);
+        }
+        TermFrequencyMap terms = wdm.getWordFrequencies();
+        documentTerms.set(slot, terms);
+        slots.put(document.filename(), slot);
+        for (int i = 0; i < terms.size(); i++) {
+            int term = terms.termAt(i);
+            if (term >= postings.length) {
+                postings = Arrays.copyOf(postings, Math.max(postings.length * 2, term + 1));
+            }
+            if (postings[term] == null) {
+                postings[term] = new TermFrequencyMap(4);
+            }
+            postings[term].put(slot, terms.countAt(i));
+        }
+    }
+
+    private void unindex(String filename) {
+        Integer slot = slots.remove(filename);
+        if (slot == null) {
+            return;
+        }
+        TermFrequencyMap terms = documentTerms.get(slot);
+        for (int i = 0; i < terms.size(); i++) {
+            postings[terms.termAt(i)].remove(slot);
+        }
+        documents.set(slot, null);
+        documentTerms.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    private void clear() {
+        documents.clear();
+        documentTerms.clear();
+        slots.clear();
+        freeSlots.clear();
+        Arrays.fill(postings, null);
+    }
+}
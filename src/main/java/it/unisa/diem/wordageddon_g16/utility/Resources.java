@@ -4,9 +4,17 @@ import it.unisa.diem.wordageddon_g16.models.Document;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -25,6 +33,27 @@ public class Resources {
             "introspezione", "palinsesto", "querimonia", "sineddoche", "aplomb"
     );
 
+    /**
+     * Numero massimo di coppie di buffer conservate nel pool per la lettura dei documenti.
+     */
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    /**
+     * Dimensione dei blocchi in cui vengono letti e decodificati i documenti, in byte e in caratteri.
+     * I buffer hanno dimensione fissa, per cui la memoria occupata non dipende da quella dei documenti.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Buffer usati per leggere un documento: i byte letti dal file e i caratteri decodificati.
+     */
+    private record ReadBuffers(ByteBuffer bytes, CharBuffer chars) {
+    }
+
+    /**
+     * Pool dei buffer usati per leggere e decodificare i documenti.
+     */
+    private static final List<ReadBuffers> BUFFER_POOL = new ArrayList<>();
 
     /**
      * Costruttore privato per impedire l'istanziazione della classe di utilità.
@@ -95,6 +124,88 @@ public class Resources {
         return Files.readString(Path.of(Config.get(Config.Props.DOCUMENTS_DIR), filename));
     }
 
+    /**
+     * Legge un file di documento e lo suddivide in token, senza copiarlo in una {@code String}.
+     * <p>
+     * Il file, risolto nella directory {@link Config.Props#DOCUMENTS_DIR}, viene letto a blocchi di {@link #CHUNK_SIZE}
+     * byte e decodificato in UTF-8 blocco per blocco; ogni blocco di caratteri viene passato al {@link Tokenizer}.
+     * I buffer sono presi da un pool condiviso e hanno dimensione fissa, per cui anche i documenti più grandi
+     * vengono letti senza allocare memoria proporzionale alla loro dimensione.
+     * </p>
+     *
+     * @param filename nome del file da leggere
+     * @param consumer destinatario dei token, con le stesse regole di {@link Tokenizer.TokenConsumer}
+     * @throws IOException se il file non è accessibile o non è codificato in UTF-8
+     */
+    public static void tokenizeDocument(String filename, Tokenizer.TokenConsumer consumer) throws IOException {
+        Path path = Path.of(Config.get(Config.Props.DOCUMENTS_DIR), filename);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        Tokenizer tokenizer = new Tokenizer();
+        ReadBuffers buffers = borrowBuffers();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer bytes = buffers.bytes();
+            CharBuffer chars = buffers.chars();
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    chars.flip();
+                    tokenizer.feed(chars, consumer);
+                    chars.clear();
+                } while (result.isOverflow());
+                // Gli eventuali byte di un carattere spezzato tra due blocchi restano in testa al buffer
+                bytes.compact();
+            }
+            CoderResult result = decoder.flush(chars);
+            if (result.isError()) {
+                result.throwException();
+            }
+            chars.flip();
+            tokenizer.feed(chars, consumer);
+            tokenizer.finish(consumer);
+        } finally {
+            releaseBuffers(buffers);
+        }
+    }
+
+    /**
+     * Preleva dal pool una coppia di buffer, o ne alloca una nuova se il pool è vuoto.
+     *
+     * @return buffer vuoti pronti per la scrittura
+     */
+    private static ReadBuffers borrowBuffers() {
+        synchronized (BUFFER_POOL) {
+            if (!BUFFER_POOL.isEmpty()) {
+                ReadBuffers buffers = BUFFER_POOL.removeLast();
+                buffers.bytes().clear();
+                buffers.chars().clear();
+                return buffers;
+            }
+        }
+        return new ReadBuffers(ByteBuffer.allocate(CHUNK_SIZE), CharBuffer.allocate(CHUNK_SIZE));
+    }
+
+    /**
+     * Restituisce una coppia di buffer al pool. Se il pool è pieno i buffer vengono scartati.
+     *
+     * @param buffers buffer da restituire
+     */
+    private static void releaseBuffers(ReadBuffers buffers) {
+        synchronized (BUFFER_POOL) {
+            if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+                BUFFER_POOL.add(buffers);
+            }
+        }
+    }
+
     public static List<String> getVocabulary() {
         return VOCABULARY;
     }
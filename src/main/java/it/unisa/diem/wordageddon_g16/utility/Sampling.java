@@ -0,0 +1,117 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Metodi di utilità per estrazioni casuali senza copiare né mescolare intere collezioni.
+ * <p>
+ * Per scegliere {@code k} elementi tra {@code n} vengono estratti {@code k} indici distinti con l'algoritmo di Floyd,
+ * con costo O(k²) indipendente da {@code n}: per le domande di gioco {@code k} vale al più 4. Per estrarre un elemento
+ * che soddisfi una condizione si usa invece il reservoir sampling, in un'unica passata e senza liste temporanee.
+ * </p>
+ */
+public final class Sampling {
+
+    private Sampling() {
+    }
+
+    /**
+     * Estrae indici distinti in un intervallo, in ordine casuale.
+     *
+     * @param from   primo indice dell'intervallo
+     * @param to     limite superiore (escluso) dell'intervallo
+     * @param count  numero di indici da estrarre
+     * @param random generatore di numeri casuali
+     * @return gli indici estratti
+     * @throws IllegalArgumentException se l'intervallo contiene meno di {@code count} indici
+     */
+    public static int[] distinctIndices(int from, int to, int count, Random random) {
+        int size = to - from;
+        if (count < 0 || size < count) {
+            throw new IllegalArgumentException("Cannot sample " + count + " indices from " + Math.max(size, 0));
+        }
+        int[] result = new int[count];
+        // Algoritmo di Floyd: per j = size - count .. size - 1, si estrae t in [0, j]; se già scelto si prende j
+        for (int found = 0, j = size - count; j < size; j++, found++) {
+            int candidate = random.nextInt(j + 1);
+            result[found] = contains(result, found, from + candidate) ? from + j : from + candidate;
+        }
+        // L'algoritmo di Floyd non produce un ordine uniforme: si mescolano i soli indici estratti
+        for (int i = count - 1; i > 0; i--) {
+            int k = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[k];
+            result[k] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce una permutazione casuale degli indici da 0 a {@code size - 1}, con l'algoritmo di Fisher-Yates.
+     * Da preferire a {@link #distinctIndices(int, int, int, Random)} quando servono tutti gli indici.
+     *
+     * @param size   numero di indici
+     * @param random generatore di numeri casuali
+     * @return gli indici in ordine casuale
+     */
+    public static int[] permutation(int size, Random random) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            int k = random.nextInt(i + 1);
+            result[i] = result[k];
+            result[k] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Estrae elementi distinti (per posizione) da una lista, in ordine casuale.
+     *
+     * @param list   lista da cui estrarre gli elementi, con accesso per indice efficiente
+     * @param count  numero di elementi da estrarre
+     * @param random generatore di numeri casuali
+     * @param <T>    tipo degli elementi
+     * @return lista degli elementi estratti
+     * @throws IllegalArgumentException se la lista contiene meno di {@code count} elementi
+     */
+    public static <T> List<T> sample(List<T> list, int count, Random random) {
+        var result = new ArrayList<T>(count);
+        for (int index : distinctIndices(0, list.size(), count, random)) {
+            result.add(list.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Estrae in modo uniforme un elemento tra quelli che soddisfano una condizione, in un'unica passata.
+     *
+     * @param elements  elementi tra cui scegliere
+     * @param condition condizione che l'elemento deve soddisfare
+     * @param random    generatore di numeri casuali
+     * @param <T>       tipo degli elementi
+     * @return l'elemento estratto, oppure {@code null} se nessun elemento soddisfa la condizione
+     */
+    public static <T> T sampleMatching(Iterable<T> elements, Predicate<? super T> condition, Random random) {
+        T chosen = null;
+        int matches = 0;
+        for (T element : elements) {
+            // Reservoir sampling con serbatoio di dimensione 1
+            if (condition.test(element) && random.nextInt(++matches) == 0) {
+                chosen = element;
+            }
+        }
+        return chosen;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
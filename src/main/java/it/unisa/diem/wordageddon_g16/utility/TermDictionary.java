@@ -0,0 +1,364 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dizionario condiviso dei termini: associa a ogni parola distinta un id intero e viceversa.
+ * <p>
+ * Ogni parola è memorizzata una sola volta per tutta l'applicazione, indipendentemente dal numero di documenti
+ * che la contengono: le {@code WDM} e la tabella {@code WDM} del database fanno riferimento ai termini tramite id.
+ * Gli id sono assegnati in ordine crescente; quelli già salvati nella tabella {@code Term} vengono caricati
+ * all'avvio con {@link #register(int, String)}, mentre i nuovi termini vengono salvati dal DAO dei termini
+ * a partire da {@link #getPersistedCount()}.
+ * </p>
+ * <p>
+ * La classe è thread-safe. Le ricerche di termini già presenti, che durante l'analisi dei documenti avvengono
+ * per ogni token e da più thread, sono letture ottimistiche senza lock: il lock in scrittura viene acquisito
+ * solo per registrare un termine nuovo, oppure se una scrittura concorrente ha invalidato la lettura.
+ * </p>
+ */
+public class TermDictionary {
+    private static final TermDictionary SHARED = new TermDictionary();
+
+    /**
+     * Parole indicizzate per id; le posizioni non assegnate valgono {@code null}.
+     */
+    private String[] words = new String[1024];
+
+    /**
+     * Hash delle parole, indicizzati per id.
+     */
+    private int[] hashes = new int[1024];
+
+    /**
+     * Tabella hash a indirizzamento aperto: ogni cella contiene l'id della parola incrementato di uno, oppure 0 se vuota.
+     */
+    private int[] table = new int[2048];
+
+    /**
+     * Numero di termini registrati.
+     */
+    private int size;
+
+    /**
+     * Prossimo id da assegnare.
+     */
+    private int nextId;
+
+    /**
+     * Numero di id (a partire da 0) per cui i termini sono già stati salvati nel database.
+     */
+    private int persistedCount;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Restituisce il dizionario condiviso dall'applicazione.
+     *
+     * @return l'istanza condivisa
+     */
+    public static TermDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Restituisce l'id di una parola, registrandola se non ancora presente.
+     *
+     * @param word parola da cercare
+     * @return l'id del termine
+     */
+    public int idOf(String word) {
+        int hash = word.hashCode();
+        long stamp = lock.tryOptimisticRead();
+        int id = probe(word, hash);
+        if (id >= 0 && lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.writeLock();
+        try {
+            int slot = findSlot(word, hash);
+            if (table[slot] != 0) {
+                return table[slot] - 1;
+            }
+            return insert(slot, nextId, word, hash);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Restituisce l'id della parola contenuta in un buffer di caratteri, registrandola se non ancora presente.
+     * <p>
+     * Se la parola è già presente non viene allocata alcuna {@code String}.
+     * </p>
+     *
+     * @param buffer buffer contenente la parola a partire dall'indice 0
+     * @param length lunghezza della parola
+     * @return l'id del termine
+     */
+    public int idOf(char[] buffer, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        long stamp = lock.tryOptimisticRead();
+        int id = probe(buffer, length, hash);
+        if (id >= 0 && lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.writeLock();
+        try {
+            int mask = table.length - 1;
+            int slot = spread(hash) & mask;
+            while (table[slot] != 0) {
+                id = table[slot] - 1;
+                if (hashes[id] == hash && equals(words[id], buffer, length)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return insert(slot, nextId, new String(buffer, 0, length), hash);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Cerca l'id di una parola senza registrarla.
+     *
+     * @param word parola da cercare
+     * @return l'id del termine, oppure -1 se la parola non è presente
+     */
+    public int find(String word) {
+        int hash = word.hashCode();
+        long stamp = lock.tryOptimisticRead();
+        int id = probe(word, hash);
+        if (lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.readLock();
+        try {
+            return table[findSlot(word, hash)] - 1;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Restituisce la parola associata a un id.
+     *
+     * @param id id del termine
+     * @return la parola
+     * @throws IllegalArgumentException se l'id non corrisponde ad alcun termine
+     */
+    public String wordOf(int id) {
+        long stamp = lock.tryOptimisticRead();
+        String[] w = words;
+        String word = id >= 0 && id < w.length ? w[id] : null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                word = id >= 0 && id < words.length ? words[id] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (word == null) {
+            throw new IllegalArgumentException("Unknown term id: " + id);
+        }
+        return word;
+    }
+
+    /**
+     * Registra un termine con un id già assegnato, ad esempio in fase di caricamento dal database.
+     * I termini registrati con questo metodo sono considerati già salvati.
+     *
+     * @param id   id del termine
+     * @param word parola associata
+     * @throws IllegalStateException se la parola o l'id sono già associati a un altro termine
+     */
+    public void register(int id, String word) {
+        int hash = word.hashCode();
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(word, hash);
+            if (table[slot] != 0) {
+                if (table[slot] - 1 != id) {
+                    throw new IllegalStateException("Term '" + word + "' already registered with another id");
+                }
+                return;
+            }
+            if (id < words.length && words[id] != null) {
+                throw new IllegalStateException("Term id " + id + " already in use");
+            }
+            insert(slot, id, word, hash);
+            persistedCount = Math.max(persistedCount, id + 1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Restituisce il numero di termini registrati.
+     *
+     * @return numero di termini
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Restituisce il limite superiore (escluso) degli id assegnati.
+     *
+     * @return il prossimo id che verrà assegnato
+     */
+    public int getNextId() {
+        long stamp = lock.readLock();
+        try {
+            return nextId;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Restituisce il numero di id, a partire da 0, i cui termini sono già salvati nel database.
+     * I termini con id maggiore o uguale a questo valore devono ancora essere salvati.
+     *
+     * @return il primo id non ancora salvato
+     */
+    public int getPersistedCount() {
+        long stamp = lock.readLock();
+        try {
+            return persistedCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Segna come salvati tutti i termini con id minore di quello indicato.
+     *
+     * @param count il primo id non ancora salvato
+     */
+    public void markPersisted(int count) {
+        long stamp = lock.writeLock();
+        try {
+            persistedCount = Math.max(persistedCount, count);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rimescola i bit dell'hash per distribuire meglio le parole nella tabella.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Cerca l'id di una parola senza lock, per una lettura ottimistica.
+     * <p>
+     * Gli array vengono letti una sola volta e ogni accesso è controllato, per cui una scrittura concorrente
+     * può produrre al più un risultato errato, che il chiamante scarta se {@link StampedLock#validate(long)} fallisce.
+     * </p>
+     *
+     * @return l'id del termine, oppure -1 se non trovato
+     */
+    private int probe(String word, int hash) {
+        int[] t = table;
+        String[] w = words;
+        int[] h = hashes;
+        int mask = t.length - 1;
+        int slot = spread(hash) & mask;
+        for (int probes = 0; probes < t.length && t[slot] != 0; probes++) {
+            int id = t[slot] - 1;
+            if (id < w.length && id < h.length && h[id] == hash && word.equals(w[id])) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int probe(char[] buffer, int length, int hash) {
+        int[] t = table;
+        String[] w = words;
+        int[] h = hashes;
+        int mask = t.length - 1;
+        int slot = spread(hash) & mask;
+        for (int probes = 0; probes < t.length && t[slot] != 0; probes++) {
+            int id = t[slot] - 1;
+            if (id < w.length && id < h.length && h[id] == hash && w[id] != null && equals(w[id], buffer, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findSlot(String word, int hash) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && words[id].equals(word)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean equals(String word, char[] buffer, int length) {
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(int slot, int id, String word, int hash) {
+        if (id >= words.length) {
+            int capacity = Math.max(words.length * 2, id + 1);
+            words = Arrays.copyOf(words, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        words[id] = word;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        size++;
+        nextId = Math.max(nextId, id + 1);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int tableLength) {
+        int[] table = new int[tableLength];
+        int mask = tableLength - 1;
+        for (int id = 0; id < nextId; id++) {
+            if (words[id] == null) {
+                continue;
+            }
+            int slot = spread(hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        this.table = table;
+    }
+}
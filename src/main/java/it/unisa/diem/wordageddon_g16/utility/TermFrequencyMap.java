@@ -0,0 +1,385 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Mappa specializzata termine → frequenza con chiavi e contatori primitivi.
+ * <p>
+ * I termini sono identificati dall'id intero assegnato dal {@link TermDictionary}. Gli id e le frequenze sono
+ * memorizzati in due array densi, nell'ordine di inserimento, mentre una tabella a indirizzamento aperto
+ * (scansione lineare) associa ogni id alla sua posizione negli array. Rispetto a una {@code HashMap<String, Integer>}
+ * evita il boxing dei contatori e permette di incrementare una frequenza con un'unica ricerca.
+ * </p>
+ * <p>
+ * I termini sono accessibili anche per posizione ({@link #termAt(int)}, {@link #countAt(int)}), utile per
+ * estrazioni casuali senza copiare l'insieme delle chiavi. La rimozione di un termine sposta nella sua posizione
+ * l'ultimo termine inserito.
+ * La classe non è thread-safe.
+ * </p>
+ */
+public class TermFrequencyMap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Azione eseguita su una coppia termine-frequenza da {@link #forEach(TermCountConsumer)}.
+     */
+    @FunctionalInterface
+    public interface TermCountConsumer {
+        /**
+         * Elabora una coppia termine-frequenza.
+         *
+         * @param term  id del termine
+         * @param count frequenza del termine
+         */
+        void accept(int term, int count);
+    }
+
+    /**
+     * Id dei termini nell'ordine di inserimento.
+     */
+    private int[] terms;
+
+    /**
+     * Frequenze, allineate a {@link #terms}.
+     */
+    private int[] counts;
+
+    /**
+     * Tabella hash: ogni cella contiene la posizione del termine negli array densi incrementata di uno, oppure 0 se vuota.
+     */
+    private int[] table;
+
+    private int size;
+
+    /**
+     * Costruisce una mappa vuota.
+     */
+    public TermFrequencyMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Costruisce una mappa vuota dimensionata per il numero di termini previsto.
+     *
+     * @param expectedSize numero di termini distinti previsto
+     */
+    public TermFrequencyMap(int expectedSize) {
+        int capacity = Math.max(DEFAULT_CAPACITY, expectedSize);
+        terms = new int[capacity];
+        counts = new int[capacity];
+        // Fattore di carico massimo 0.5
+        table = new int[Integer.highestOneBit(capacity - 1) << 2];
+    }
+
+    /**
+     * Restituisce il numero di termini distinti.
+     *
+     * @return numero di termini nella mappa
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Verifica se la mappa è vuota.
+     *
+     * @return {@code true} se non contiene termini
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Incrementa di uno la frequenza di un termine, inserendolo se assente.
+     *
+     * @param term id del termine da conteggiare
+     * @return la nuova frequenza del termine
+     */
+    public int increment(int term) {
+        return add(term, 1);
+    }
+
+    /**
+     * Somma un valore alla frequenza di un termine, inserendolo se assente.
+     *
+     * @param term  id del termine da aggiornare
+     * @param delta valore da sommare
+     * @return la nuova frequenza del termine
+     */
+    public int add(int term, int delta) {
+        int slot = findSlot(term);
+        if (table[slot] != 0) {
+            return counts[table[slot] - 1] += delta;
+        }
+        insert(slot, term, delta);
+        return delta;
+    }
+
+    /**
+     * Imposta la frequenza di un termine, inserendolo se assente.
+     *
+     * @param term  id del termine da aggiornare
+     * @param count frequenza da associare
+     */
+    public void put(int term, int count) {
+        int slot = findSlot(term);
+        if (table[slot] != 0) {
+            counts[table[slot] - 1] = count;
+        } else {
+            insert(slot, term, count);
+        }
+    }
+
+    /**
+     * Rimuove un termine. L'ultimo termine degli array densi prende la posizione di quello rimosso.
+     *
+     * @param term id del termine da rimuovere
+     * @return {@code true} se il termine era presente
+     */
+    public boolean remove(int term) {
+        int slot = findSlot(term);
+        if (table[slot] == 0) {
+            return false;
+        }
+        int index = table[slot] - 1;
+        deleteSlot(slot);
+        int last = size - 1;
+        if (index != last) {
+            // Sposta l'ultimo termine nella posizione liberata, aggiornando la sua cella nella tabella
+            int movedSlot = findSlot(terms[last]);
+            terms[index] = terms[last];
+            counts[index] = counts[last];
+            table[movedSlot] = index + 1;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Restituisce la frequenza di un termine.
+     *
+     * @param term id del termine da cercare
+     * @return la frequenza, oppure 0 se il termine è assente
+     */
+    public int get(int term) {
+        int index = indexOf(term);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * Verifica se un termine è presente.
+     *
+     * @param term id del termine da cercare
+     * @return {@code true} se il termine è presente
+     */
+    public boolean contains(int term) {
+        return indexOf(term) >= 0;
+    }
+
+    /**
+     * Restituisce la posizione di un termine negli array densi.
+     *
+     * @param term id del termine da cercare
+     * @return posizione compresa tra 0 e {@code size() - 1}, oppure -1 se assente
+     */
+    public int indexOf(int term) {
+        return table[findSlot(term)] - 1;
+    }
+
+    /**
+     * Restituisce l'id del termine in una data posizione (ordine di inserimento).
+     *
+     * @param index posizione compresa tra 0 e {@code size() - 1}
+     * @return l'id del termine
+     * @throws IndexOutOfBoundsException se l'indice non è valido
+     */
+    public int termAt(int index) {
+        return terms[checkIndex(index)];
+    }
+
+    /**
+     * Restituisce la frequenza del termine in una data posizione (ordine di inserimento).
+     *
+     * @param index posizione compresa tra 0 e {@code size() - 1}
+     * @return la frequenza
+     * @throws IndexOutOfBoundsException se l'indice non è valido
+     */
+    public int countAt(int index) {
+        return counts[checkIndex(index)];
+    }
+
+    /**
+     * Esegue un'azione per ogni coppia termine-frequenza, senza boxing.
+     *
+     * @param action azione da eseguire
+     */
+    public void forEach(TermCountConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(terms[i], counts[i]);
+        }
+    }
+
+    /**
+     * Restituisce la somma di tutte le frequenze.
+     *
+     * @return numero totale di occorrenze
+     */
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Restituisce una vista di sola lettura parola → frequenza, che riflette le modifiche successive.
+     *
+     * @param dictionary dizionario usato per convertire gli id in parole
+     * @return vista non modificabile parola → frequenza
+     */
+    public Map<String, Integer> asMap(TermDictionary dictionary) {
+        return new MapView(dictionary);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Rimescola i bit dell'id per distribuire meglio i termini nella tabella.
+     */
+    private static int spread(int term) {
+        int h = term * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Cerca la cella della tabella che contiene il termine, oppure la prima cella vuota in cui inserirlo.
+     */
+    private int findSlot(int term) {
+        int mask = table.length - 1;
+        int slot = spread(term) & mask;
+        while (table[slot] != 0 && terms[table[slot] - 1] != term) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Svuota una cella della tabella, riportando indietro le celle successive della stessa sequenza di scansione
+     * così che le ricerche non si interrompano sulla cella vuota.
+     */
+    private void deleteSlot(int slot) {
+        int mask = table.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            int ideal = spread(terms[table[next] - 1]) & mask;
+            // La cella può occupare il buco solo se la sua posizione ideale non cade tra il buco e la cella stessa
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void insert(int slot, int term, int count) {
+        if (size == terms.length) {
+            int capacity = size * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        terms[size] = term;
+        counts[size] = count;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private void rehash(int tableLength) {
+        table = new int[tableLength];
+        int mask = tableLength - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = spread(terms[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Vista di sola lettura della mappa con chiavi testuali, con ricerca diretta per {@link Map#get(Object)}.
+     */
+    private class MapView extends AbstractMap<String, Integer> {
+        private final TermDictionary dictionary;
+
+        private MapView(TermDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String word)) {
+                return null;
+            }
+            int term = dictionary.find(word);
+            int index = term < 0 ? -1 : indexOf(term);
+            return index < 0 ? null : counts[index];
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            int index = next++;
+                            return new SimpleImmutableEntry<>(dictionary.wordOf(terms[index]), counts[index]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
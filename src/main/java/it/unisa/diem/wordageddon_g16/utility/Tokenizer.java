@@ -0,0 +1,191 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Tokenizzatore a singola passata per l'analisi dei documenti testuali.
+ * <p>
+ * Sostituisce lo {@link java.util.Scanner} con delimitatore {@code [\p{Punct}'’\s]+} mantenendo gli stessi confini
+ * dei token: un token è una sequenza massimale di caratteri che non siano punteggiatura ASCII, l'apostrofo tipografico
+ * {@code ’} o spazi bianchi ({@code \s}). Ogni token viene convertito in minuscolo direttamente nel buffer interno,
+ * con lo stesso risultato di {@link String#toLowerCase()}.
+ * </p>
+ * <p>
+ * I buffer vengono riutilizzati tra un token e l'altro: il consumer riceve l'array interno e la lunghezza del token,
+ * e deve copiarne il contenuto se intende conservarlo. Un'istanza non è thread-safe.
+ * </p>
+ */
+public class Tokenizer {
+    /**
+     * Consumer dei token prodotti dal {@link Tokenizer}.
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * Riceve un token già convertito in minuscolo.
+         *
+         * @param buffer buffer contenente il token a partire dall'indice 0 (riutilizzato al token successivo)
+         * @param length lunghezza del token
+         */
+        void accept(char[] buffer, int length);
+    }
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Buffer di lettura usato quando la sorgente è un {@link Reader}.
+     */
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+
+    /**
+     * Buffer del token corrente, cresce solo se si incontra un token più lungo.
+     */
+    private char[] token = new char[64];
+    private int length;
+
+    /**
+     * Indica se il token corrente contiene caratteri che richiedono la conversione completa di {@link String#toLowerCase()}.
+     */
+    private boolean needsFullLowerCase;
+
+    /**
+     * Locale usato per la conversione in minuscolo, lo stesso di {@link String#toLowerCase()}.
+     */
+    private final Locale locale;
+
+    /**
+     * Con le lingue turca, azera e lituana la conversione in minuscolo dipende dal contesto anche per caratteri Latin-1,
+     * per cui la conversione carattere per carattere non è applicabile.
+     */
+    private final boolean latin1FastPath;
+
+    /**
+     * Costruisce un tokenizzatore che usa il locale di default per la conversione in minuscolo.
+     */
+    public Tokenizer() {
+        this.locale = Locale.getDefault();
+        String lang = locale.getLanguage();
+        this.latin1FastPath = !(lang.equals("tr") || lang.equals("az") || lang.equals("lt"));
+    }
+
+    /**
+     * Verifica se un carattere separa due token.
+     * <p>
+     * Equivale alla classe {@code [\p{Punct}'’\s]}: punteggiatura ASCII, {@code ’} (U+2019) e gli spazi
+     * {@code [ \t\n\x0B\f\r]}.
+     * </p>
+     *
+     * @param c carattere da classificare
+     * @return {@code true} se il carattere è un delimitatore
+     */
+    public static boolean isDelimiter(char c) {
+        if (c < 0x80) {
+            return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~')
+                    || c == ' ' || (c >= '\t' && c <= '\r');
+        }
+        return c == '’';
+    }
+
+    /**
+     * Suddivide in token il contenuto di un {@link Reader}, leggendolo a blocchi.
+     *
+     * @param reader   sorgente del testo (non viene chiuso)
+     * @param consumer destinatario dei token
+     * @throws IOException se la lettura fallisce
+     */
+    public void tokenize(Reader reader, TokenConsumer consumer) throws IOException {
+        length = 0;
+        int read;
+        while ((read = reader.read(readBuffer, 0, readBuffer.length)) != -1) {
+            for (int i = 0; i < read; i++) {
+                append(readBuffer[i], consumer);
+            }
+        }
+        flush(consumer);
+    }
+
+    /**
+     * Suddivide in token i caratteri rimanenti di un {@link CharBuffer}, senza modificarne la posizione.
+     *
+     * @param chars    sorgente del testo
+     * @param consumer destinatario dei token
+     */
+    public void tokenize(CharBuffer chars, TokenConsumer consumer) {
+        length = 0;
+        feed(chars, consumer);
+        flush(consumer);
+    }
+
+    /**
+     * Suddivide in token un blocco di testo che prosegue quello ricevuto dalla chiamata precedente, senza modificarne
+     * la posizione.
+     * <p>
+     * Permette di elaborare un testo a blocchi, ad esempio durante la decodifica di un file: un token spezzato tra due
+     * blocchi viene consegnato intero. L'ultimo token viene consegnato solo da {@link #finish(TokenConsumer)}, da
+     * invocare al termine del testo.
+     * </p>
+     *
+     * @param chars    blocco di testo
+     * @param consumer destinatario dei token
+     */
+    public void feed(CharBuffer chars, TokenConsumer consumer) {
+        int limit = chars.limit();
+        for (int i = chars.position(); i < limit; i++) {
+            append(chars.get(i), consumer);
+        }
+    }
+
+    /**
+     * Consegna l'ultimo token del testo ricevuto con {@link #feed(CharBuffer, TokenConsumer)} e prepara il
+     * tokenizzatore per un nuovo testo.
+     *
+     * @param consumer destinatario dei token
+     */
+    public void finish(TokenConsumer consumer) {
+        flush(consumer);
+    }
+
+    /**
+     * Aggiunge un carattere al token corrente, oppure chiude il token se il carattere è un delimitatore.
+     */
+    private void append(char c, TokenConsumer consumer) {
+        if (isDelimiter(c)) {
+            flush(consumer);
+            return;
+        }
+        if (length == token.length) {
+            token = Arrays.copyOf(token, length * 2);
+        }
+        if (c < 0x100 && latin1FastPath) {
+            token[length++] = Character.toLowerCase(c);
+        } else {
+            // Caratteri fuori dal Latin-1 (es. 'İ' o il sigma finale) vengono delegati a String#toLowerCase
+            needsFullLowerCase = true;
+            token[length++] = c;
+        }
+    }
+
+    /**
+     * Consegna il token corrente al consumer, se non vuoto, e prepara il buffer per il successivo.
+     */
+    private void flush(TokenConsumer consumer) {
+        if (length == 0) {
+            return;
+        }
+        if (needsFullLowerCase) {
+            String lower = new String(token, 0, length).toLowerCase(locale);
+            if (lower.length() > token.length) {
+                token = new char[lower.length() * 2];
+            }
+            lower.getChars(0, lower.length(), token, 0);
+            length = lower.length();
+            needsFullLowerCase = false;
+        }
+        consumer.accept(token, length);
+        length = 0;
+    }
+}
@@ -0,0 +1,205 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import it.unisa.diem.wordageddon_g16.models.Difficulty;
+import it.unisa.diem.wordageddon_g16.models.Document;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Indice in memoria dei documenti della libreria ordinati per numero di parole.
+ * <p>
+ * Permette di selezionare i documenti di una partita con ricerche per intervallo di numero di parole
+ * invece di scorrere l'intera tabella: il rango di un documento è la sua posizione nell'ordine crescente
+ * di numero di parole, e un intervallo di numeri di parole corrisponde a un intervallo di ranghi,
+ * individuato con una ricerca binaria. Per ciascuna {@link Difficulty} è disponibile l'intervallo ("bucket")
+ * dei documenti il cui numero di parole è compreso tra {@link Difficulty#getMinWords()} e {@link Difficulty#getMaxWords()}.
+ * </p>
+ * <p>
+ * L'indice viene caricato alla prima richiesta tramite {@link #snapshot(Supplier)} e mantenuto aggiornato con
+ * {@link #put(Document)} e {@link #remove(Document)}; le modifiche che cambiano il numero di parole di più documenti
+ * insieme (ad esempio quelle delle stopword) lo invalidano con {@link #invalidate()}.
+ * Ogni modifica produce una nuova {@link Snapshot} immutabile, per cui le letture non richiedono sincronizzazione.
+ * </p>
+ */
+public class WordCountIndex {
+
+    /**
+     * Stato immutabile dell'indice in un dato momento.
+     */
+    public static class Snapshot {
+        private final Document[] documents;
+        private final int[] wordCounts;
+        private final Map<Difficulty, int[]> buckets = new EnumMap<>(Difficulty.class);
+
+        private Snapshot(Document[] documents) {
+            this.documents = documents;
+            this.wordCounts = new int[documents.length];
+            for (int i = 0; i < documents.length; i++) {
+                wordCounts[i] = wordCountOf(documents[i]);
+            }
+            for (Difficulty difficulty : Difficulty.values()) {
+                buckets.put(difficulty, new int[]{
+                        firstRankAtLeast(difficulty.getMinWords()),
+                        firstRankAbove(difficulty.getMaxWords())
+                });
+            }
+        }
+
+        /**
+         * Restituisce il numero di documenti indicizzati.
+         *
+         * @return numero di documenti
+         */
+        public int size() {
+            return documents.length;
+        }
+
+        /**
+         * Restituisce il documento di un dato rango.
+         *
+         * @param rank rango compreso tra 0 (meno parole) e {@code size() - 1} (più parole)
+         * @return il documento
+         */
+        public Document get(int rank) {
+            return documents[rank];
+        }
+
+        /**
+         * Restituisce il numero di parole del documento di un dato rango.
+         *
+         * @param rank rango del documento
+         * @return il numero di parole
+         */
+        public int wordCountAt(int rank) {
+            return wordCounts[rank];
+        }
+
+        /**
+         * Restituisce il primo rango con numero di parole maggiore o uguale a quello indicato.
+         *
+         * @param wordCount numero di parole di riferimento
+         * @return il rango, oppure {@code size()} se nessun documento raggiunge il numero di parole
+         */
+        public int firstRankAtLeast(int wordCount) {
+            int low = 0;
+            int high = wordCounts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (wordCounts[mid] < wordCount) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Restituisce il primo rango con numero di parole strettamente maggiore di quello indicato.
+         *
+         * @param wordCount numero di parole di riferimento
+         * @return il rango, oppure {@code size()} se nessun documento supera il numero di parole
+         */
+        public int firstRankAbove(int wordCount) {
+            return wordCount == Integer.MAX_VALUE ? wordCounts.length : firstRankAtLeast(wordCount + 1);
+        }
+
+        /**
+         * Restituisce l'intervallo di ranghi dei documenti il cui numero di parole rientra nei limiti di una difficoltà.
+         *
+         * @param difficulty la difficoltà
+         * @return un array {@code [from, to)} con il primo rango e il limite superiore (escluso) dell'intervallo
+         */
+        public int[] bucket(Difficulty difficulty) {
+            return buckets.get(difficulty).clone();
+        }
+    }
+
+    private static final Comparator<Document> ORDER = Comparator
+            .comparingInt(WordCountIndex::wordCountOf)
+            .thenComparing(Document::filename);
+
+    /**
+     * Stato corrente dell'indice, {@code null} se l'indice non è caricato.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Restituisce lo stato corrente dell'indice, caricandolo con i documenti forniti se necessario.
+     *
+     * @param loader fornisce tutti i documenti della libreria
+     * @return lo stato corrente dell'indice
+     */
+    public Snapshot snapshot(Supplier<? extends Collection<Document>> loader) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                Map<String, Document> byFilename = new HashMap<>();
+                for (Document document : loader.get()) {
+                    byFilename.putIfAbsent(document.filename(), document);
+                }
+                Document[] sorted = byFilename.values().toArray(new Document[0]);
+                Arrays.sort(sorted, ORDER);
+                snapshot = new Snapshot(sorted);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Invalida l'indice: verrà ricaricato alla prossima invocazione di {@link #snapshot(Supplier)}.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * Inserisce o sostituisce un documento nell'indice. Se l'indice non è caricato l'operazione viene ignorata,
+     * perché il documento verrà letto al caricamento.
+     *
+     * @param document il documento da indicizzare
+     */
+    public synchronized void put(Document document) {
+        if (snapshot == null) {
+            return;
+        }
+        Document[] current = without(snapshot.documents, document.filename());
+        int position = -Arrays.binarySearch(current, document, ORDER) - 1;
+        Document[] updated = new Document[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, position);
+        updated[position] = document;
+        System.arraycopy(current, position, updated, position + 1, current.length - position);
+        snapshot = new Snapshot(updated);
+    }
+
+    /**
+     * Rimuove un documento dall'indice.
+     *
+     * @param document il documento da rimuovere
+     */
+    public synchronized void remove(Document document) {
+        if (snapshot != null) {
+            snapshot = new Snapshot(without(snapshot.documents, document.filename()));
+        }
+    }
+
+    private static Document[] without(Document[] documents, String filename) {
+        for (int i = 0; i < documents.length; i++) {
+            if (documents[i].filename().equals(filename)) {
+                Document[] result = new Document[documents.length - 1];
+                System.arraycopy(documents, 0, result, 0, i);
+                System.arraycopy(documents, i + 1, result, i, documents.length - i - 1);
+                return result;
+            }
+        }
+        return documents;
+    }
+
+    private static int wordCountOf(Document document) {
+        return document.wordCount() == null ? 0 : document.wordCount();
+    }
+}
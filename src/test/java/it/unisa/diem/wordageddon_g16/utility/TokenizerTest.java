@@ -0,0 +1,119 @@
+package it.unisa.diem.wordageddon_g16.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Verifica che il {@link Tokenizer} produca gli stessi conteggi dello {@link Scanner} che sostituisce,
+ * sui documenti di {@code docs/testDocs}.
+ */
+class TokenizerTest {
+    private static final Path TEST_DOCS = Path.of("docs", "testDocs");
+    private static final String DELIMITER = "[\\p{Punct}'’\\s]+";
+
+    @Test
+    void matchesScannerWithDefaultLocale() throws IOException {
+        assertMatchesScanner(Locale.getDefault());
+    }
+
+    @Test
+    void matchesScannerWithTurkishLocale() throws IOException {
+        assertMatchesScanner(Locale.forLanguageTag("tr"));
+    }
+
+    @Test
+    void matchesScannerOnNonLatin1Characters() throws IOException {
+        String text = "İstanbul, ΟΔΟΣ’Σ ĲSSEL  Straße\tÀ-la-CARTE";
+        for (Locale locale : List.of(Locale.ROOT, Locale.forLanguageTag("tr"), Locale.forLanguageTag("lt"))) {
+            withDefaultLocale(locale, () -> assertEquals(scannerCounts(text), tokenizerCounts(text), locale.toString()));
+        }
+    }
+
+    /**
+     * Confronta i conteggi su tutti i documenti di test, con il locale indicato impostato come default.
+     */
+    private static void assertMatchesScanner(Locale locale) throws IOException {
+        List<Path> docs;
+        try (Stream<Path> files = Files.list(TEST_DOCS)) {
+            docs = files.filter(Files::isRegularFile).sorted().toList();
+        }
+        assertFalse(docs.isEmpty(), "No documents in " + TEST_DOCS);
+        withDefaultLocale(locale, () -> {
+            for (Path doc : docs) {
+                String text = Files.readString(doc);
+                Map<String, Integer> expected = scannerCounts(text);
+                assertEquals(expected, tokenizerCounts(text), doc + " (Reader, " + locale + ")");
+                assertEquals(expected, bufferCounts(text), doc + " (CharBuffer, " + locale + ")");
+                assertEquals(expected, chunkedCounts(text, 7), doc + " (feed, " + locale + ")");
+            }
+        });
+    }
+
+    private static Map<String, Integer> scannerCounts(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Scanner scanner = new Scanner(text).useDelimiter(DELIMITER)) {
+            while (scanner.hasNext()) {
+                counts.merge(scanner.next().toLowerCase(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> tokenizerCounts(String text) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        new Tokenizer().tokenize(new StringReader(text),
+                (buffer, length) -> counts.merge(new String(buffer, 0, length), 1, Integer::sum));
+        return counts;
+    }
+
+    private static Map<String, Integer> bufferCounts(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        new Tokenizer().tokenize(CharBuffer.wrap(text),
+                (buffer, length) -> counts.merge(new String(buffer, 0, length), 1, Integer::sum));
+        return counts;
+    }
+
+    /**
+     * Conta i token passando il testo al tokenizzatore a blocchi di {@code chunkSize} caratteri,
+     * così che molti token risultino spezzati tra due blocchi.
+     */
+    private static Map<String, Integer> chunkedCounts(String text, int chunkSize) {
+        Map<String, Integer> counts = new HashMap<>();
+        Tokenizer.TokenConsumer consumer = (buffer, length) -> counts.merge(new String(buffer, 0, length), 1, Integer::sum);
+        Tokenizer tokenizer = new Tokenizer();
+        for (int start = 0; start < text.length(); start += chunkSize) {
+            tokenizer.feed(CharBuffer.wrap(text, start, Math.min(text.length(), start + chunkSize)), consumer);
+        }
+        tokenizer.finish(consumer);
+        return counts;
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static void withDefaultLocale(Locale locale, IOAction action) throws IOException {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(locale);
+        try {
+            action.run();
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}